@@ -0,0 +1,41 @@
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import frc.robot.FieldConstants.ReefSide;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks finding the nearest reef branch from poses spread over the whole field. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldConstantsBenchmark {
+  private final Pose2d[] poses = new Pose2d[64];
+  private int poseIndex = 0;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < poses.length; i++) {
+      poses[i] =
+          new Pose2d(
+              FieldConstants.fieldLength * (i % 8 + 0.5) / 8,
+              FieldConstants.fieldWidth * (i / 8 + 0.5) / 8,
+              Rotation2d.fromDegrees(45 * i));
+    }
+  }
+
+  @Benchmark
+  public void getNearestReefBranch(Blackhole blackhole) {
+    var pose = poses[poseIndex];
+    poseIndex = (poseIndex + 1) % poses.length;
+    blackhole.consume(FieldConstants.getNearestReefBranch(pose, ReefSide.LEFT));
+  }
+}
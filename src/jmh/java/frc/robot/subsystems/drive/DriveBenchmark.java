@@ -0,0 +1,121 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks the drive's main loop work, with IO implementations that hand out odometry samples
+ * like the real ones do at 250 Hz. The logger isn't started, so only the drive's own work is
+ * measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DriveBenchmark {
+  // Odometry samples per 20 ms cycle at 250 Hz
+  private static final int SAMPLES_PER_CYCLE = 5;
+  private static final double SAMPLE_PERIOD_SECONDS = 0.004;
+
+  private static double timestamp = 0.0;
+
+  /** Reports a robot turning, with the same arrays and rotations reused every cycle. */
+  private static class BenchmarkGyroIO implements GyroIO {
+    private final double[] timestamps = new double[SAMPLES_PER_CYCLE];
+    private final Rotation2d[] yawPositions = new Rotation2d[SAMPLES_PER_CYCLE];
+    private final Rotation2d[] yaws = new Rotation2d[360];
+    private int yawIndex = 0;
+
+    private BenchmarkGyroIO() {
+      for (int i = 0; i < yaws.length; i++) {
+        yaws[i] = Rotation2d.fromDegrees(i);
+      }
+    }
+
+    @Override
+    public void updateInputs(GyroIOInputs inputs) {
+      for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+        yawIndex = (yawIndex + 1) % yaws.length;
+        timestamps[i] = timestamp + i * SAMPLE_PERIOD_SECONDS;
+        yawPositions[i] = yaws[yawIndex];
+      }
+      inputs.connected = true;
+      inputs.yawPosition = yawPositions[SAMPLES_PER_CYCLE - 1];
+      inputs.odometryYawTimestamps = timestamps;
+      inputs.odometryYawPositions = yawPositions;
+    }
+  }
+
+  /** Reports a module driving forward at a fixed angle, with the same arrays reused. */
+  private static class BenchmarkModuleIO implements ModuleIO {
+    private final double[] timestamps = new double[SAMPLES_PER_CYCLE];
+    private final double[] drivePositions = new double[SAMPLES_PER_CYCLE];
+    private final Rotation2d[] turnPositions = new Rotation2d[SAMPLES_PER_CYCLE];
+    private double drivePosition = 0.0;
+
+    private BenchmarkModuleIO(double angleRadians) {
+      for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+        turnPositions[i] = Rotation2d.fromRadians(angleRadians);
+      }
+    }
+
+    @Override
+    public void updateInputs(ModuleIOInputs inputs) {
+      for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+        drivePosition += 0.05;
+        timestamps[i] = timestamp + i * SAMPLE_PERIOD_SECONDS;
+        drivePositions[i] = drivePosition;
+      }
+      inputs.driveConnected = true;
+      inputs.turnConnected = true;
+      inputs.turnEncoderConnected = true;
+      inputs.drivePositionRad = drivePosition;
+      inputs.turnPosition = turnPositions[0];
+      inputs.odometryTimestamps = timestamps;
+      inputs.odometryDrivePositionsRad = drivePositions;
+      inputs.odometryTurnPositions = turnPositions;
+    }
+  }
+
+  private Drive drive;
+  private final ChassisSpeeds[] speeds = new ChassisSpeeds[16];
+  private int speedIndex = 0;
+
+  @Setup
+  public void setup() {
+    HAL.initialize(500, 0);
+    drive =
+        new Drive(
+            new BenchmarkGyroIO(),
+            new BenchmarkModuleIO(0.1),
+            new BenchmarkModuleIO(0.2),
+            new BenchmarkModuleIO(0.3),
+            new BenchmarkModuleIO(0.4));
+
+    // A spread of driving directions, including some that need desaturating
+    for (int i = 0; i < speeds.length; i++) {
+      double angle = 2 * Math.PI * i / speeds.length;
+      speeds[i] = new ChassisSpeeds(5 * Math.cos(angle), 5 * Math.sin(angle), i % 4 - 1.5);
+    }
+  }
+
+  @Benchmark
+  public void periodic() {
+    timestamp += SAMPLES_PER_CYCLE * SAMPLE_PERIOD_SECONDS;
+    drive.periodic();
+  }
+
+  @Benchmark
+  public void runVelocity() {
+    drive.runVelocity(speeds[speedIndex]);
+    speedIndex = (speedIndex + 1) % speeds.length;
+  }
+}
@@ -0,0 +1,86 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link SwervePoseEstimator} with WPILib's SwerveDrivePoseEstimator on the same inputs.
+ * One operation is one 20 ms cycle: five odometry samples, then one vision measurement from 50 ms
+ * ago, then reading the estimate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoseEstimatorBenchmark {
+  private static final int SAMPLES_PER_CYCLE = 5;
+  private static final double SAMPLE_PERIOD_SECONDS = 0.004;
+  private static final double VISION_LATENCY_SECONDS = 0.05;
+
+  private final SwerveModulePosition[] positions = new SwerveModulePosition[4];
+  private final Rotation2d[] gyroAngles = new Rotation2d[SAMPLES_PER_CYCLE];
+  private final Pose2d visionPose = new Pose2d(2.0, 3.0, Rotation2d.fromDegrees(30));
+  private final Matrix<N3, N1> visionStdDevs = VecBuilder.fill(0.5, 0.5, 1.0);
+
+  private SwervePoseEstimator estimator;
+  private SwerveDrivePoseEstimator wpilibEstimator;
+  private double timestamp = 0.0;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < 4; i++) {
+      positions[i] = new SwerveModulePosition(0.0, Rotation2d.fromDegrees(10 * i));
+    }
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      gyroAngles[i] = Rotation2d.fromDegrees(i);
+    }
+    var translations = Drive.getModuleTranslations();
+    estimator = new SwervePoseEstimator(translations, Rotation2d.kZero, positions, Pose2d.kZero);
+    wpilibEstimator =
+        new SwerveDrivePoseEstimator(
+            new SwerveDriveKinematics(translations), Rotation2d.kZero, positions, Pose2d.kZero);
+  }
+
+  @Benchmark
+  public void swervePoseEstimator(Blackhole blackhole) {
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      advance();
+      estimator.updateWithTime(timestamp, gyroAngles[i], positions);
+    }
+    estimator.addVisionMeasurement(visionPose, timestamp - VISION_LATENCY_SECONDS, visionStdDevs);
+    blackhole.consume(estimator.getEstimatedPosition());
+  }
+
+  @Benchmark
+  public void wpilibPoseEstimator(Blackhole blackhole) {
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      advance();
+      wpilibEstimator.updateWithTime(timestamp, gyroAngles[i], positions);
+    }
+    wpilibEstimator.addVisionMeasurement(
+        visionPose, timestamp - VISION_LATENCY_SECONDS, visionStdDevs);
+    blackhole.consume(wpilibEstimator.getEstimatedPosition());
+  }
+
+  private void advance() {
+    timestamp += SAMPLE_PERIOD_SECONDS;
+    for (var position : positions) {
+      position.distanceMeters += 0.01;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import frc.robot.subsystems.drive.Drive;
+import frc.robot.subsystems.drive.GyroIO;
+import frc.robot.subsystems.drive.ModuleIO;
+import frc.robot.subsystems.vision.VisionIO.PoseObservationType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks filtering a cycle of vision observations from three cameras. Each camera reports a
+ * mix of observations that are accepted and ones that are rejected for ambiguity or for being off
+ * the field, plus a few reef tags for auto align.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VisionBenchmark {
+  private static final int CAMERAS = 3;
+
+  /** Reports the same observations every cycle, without allocating. */
+  private static class BenchmarkVisionIO implements VisionIO {
+    private final VisionIOInputs observations = new VisionIOInputs();
+
+    private BenchmarkVisionIO() {
+      var buffer = new VisionObservationBuffer();
+      var rotation = new Rotation3d(0.0, 0.0, 0.5);
+      var type = PoseObservationType.PHOTONVISION;
+      buffer.addPoseObservation(1.0, new Pose3d(3.0, 4.0, 0.0, rotation), 0.05, 2, 2.5, type);
+      buffer.addPoseObservation(1.0, new Pose3d(3.1, 4.1, 0.0, rotation), 0.1, 1, 3.0, type);
+      // High ambiguity
+      buffer.addPoseObservation(1.0, new Pose3d(5.0, 2.0, 0.0, rotation), 0.9, 1, 4.0, type);
+      // Off the field
+      buffer.addPoseObservation(1.0, new Pose3d(-1.0, 2.0, 0.0, rotation), 0.05, 2, 3.0, type);
+      buffer.addTagId(17);
+      buffer.addTagId(18);
+      buffer.addTagId(19);
+      buffer.addTagOffset(new Pose2d(1.5, 0.2, Rotation2d.fromDegrees(5)), 17);
+      buffer.addTagOffset(new Pose2d(2.5, -0.4, Rotation2d.fromDegrees(-20)), 18);
+      buffer.addTagOffset(new Pose2d(3.0, 1.0, Rotation2d.fromDegrees(40)), 1);
+      buffer.copyTo(observations);
+    }
+
+    @Override
+    public void updateInputs(VisionIOInputs inputs) {
+      inputs.connected = true;
+      inputs.poseTimestamps = observations.poseTimestamps;
+      inputs.poses = observations.poses;
+      inputs.poseAmbiguities = observations.poseAmbiguities;
+      inputs.poseTagCounts = observations.poseTagCounts;
+      inputs.poseAverageTagDistances = observations.poseAverageTagDistances;
+      inputs.poseTypes = observations.poseTypes;
+      inputs.tagIds = observations.tagIds;
+      inputs.tagOffsets = observations.tagOffsets;
+      inputs.tagOffsetIds = observations.tagOffsetIds;
+    }
+  }
+
+  private Vision vision;
+  private Blackhole blackhole;
+
+  @Setup
+  public void setup(Blackhole blackhole) {
+    HAL.initialize(500, 0);
+    this.blackhole = blackhole;
+    var drive =
+        new Drive(
+            new GyroIO() {},
+            new ModuleIO() {},
+            new ModuleIO() {},
+            new ModuleIO() {},
+            new ModuleIO() {});
+    var io = new VisionIO[CAMERAS];
+    for (int i = 0; i < CAMERAS; i++) {
+      io[i] = new BenchmarkVisionIO();
+    }
+    vision =
+        new Vision(
+            (pose, timestamp, stdDevs) -> {
+              this.blackhole.consume(pose);
+              this.blackhole.consume(stdDevs);
+            },
+            drive,
+            io);
+  }
+
+  @Benchmark
+  public void periodic() {
+    vision.periodic();
+  }
+}
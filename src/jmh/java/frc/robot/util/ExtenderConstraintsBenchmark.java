@@ -0,0 +1,45 @@
+package frc.robot.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks looking up the pivot angle envelope at heights across the elevator's travel. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExtenderConstraintsBenchmark {
+  private static final double MAX_HEIGHT_INCHES = 80;
+
+  private ExtenderConstraints constraints;
+  private double height = 0.0;
+
+  @Setup
+  public void setup() {
+    constraints = new ExtenderConstraints("constraints.txt", MAX_HEIGHT_INCHES);
+  }
+
+  @Benchmark
+  public void getAngleConstraint(Blackhole blackhole) {
+    blackhole.consume(constraints.getAngleConstraint(nextHeight()));
+  }
+
+  @Benchmark
+  public void getMinAndMaxDegreesFromVertical(Blackhole blackhole) {
+    double inches = nextHeight();
+    blackhole.consume(constraints.getMinDegreesFromVertical(inches));
+    blackhole.consume(constraints.getMaxDegreesFromVertical(inches));
+  }
+
+  private double nextHeight() {
+    // A step that doesn't line up with the table, so every part of the interpolation runs
+    height = (height + 0.37) % MAX_HEIGHT_INCHES;
+    return height;
+  }
+}
@@ -0,0 +1,38 @@
+package frc.robot.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the check subsystems make every cycle for changed gains, with four tunable numbers
+ * that don't change. This is the common case, so it should be cheap and allocation free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggedTunableNumberBenchmark {
+  private LoggedTunableNumber kP;
+  private LoggedTunableNumber kI;
+  private LoggedTunableNumber kD;
+  private LoggedTunableNumber kG;
+
+  @Setup
+  public void setup() {
+    kP = new LoggedTunableNumber("Benchmark/kP", 1.0);
+    kI = new LoggedTunableNumber("Benchmark/kI", 0.0);
+    kD = new LoggedTunableNumber("Benchmark/kD", 0.1);
+    kG = new LoggedTunableNumber("Benchmark/kG", 0.5);
+  }
+
+  @Benchmark
+  public void ifChanged(Blackhole blackhole) {
+    LoggedTunableNumber.ifChanged(hashCode(), blackhole::consume, kP, kI, kD, kG);
+  }
+}
@@ -5,10 +5,13 @@ import edu.wpi.first.wpilibj.RobotBase;
 /**
  * This class defines the runtime mode used by AdvantageKit. The mode is always "real" when running
  * on a roboRIO. Change the value of "simMode" to switch between "sim" (physics sim) and "replay"
- * (log replay from a file).
+ * (log replay from a file). Setting the "replay" system property also selects replay, which is how
+ * {@code BatchReplay} starts its replays.
  */
 public final class Constants {
-  public static final Mode simMode = Mode.SIM;
+  public static final String REPLAY_PROPERTY = "replay";
+
+  public static final Mode simMode = Boolean.getBoolean(REPLAY_PROPERTY) ? Mode.REPLAY : Mode.SIM;
   public static final Mode currentMode = RobotBase.isReal() ? Mode.REAL : simMode;
 
   // Set this to false during comp to lock in the tuning values
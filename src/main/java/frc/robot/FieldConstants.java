@@ -195,22 +195,128 @@ public class FieldConstants {
     public final double pitch;
   }
 
-  public static Pose2d getNearestReefFace(Pose2d currentPose) {
-    return currentPose.nearest(List.of(FieldConstants.Reef.centerFaces));
-  }
-
   public enum ReefSide {
     LEFT,
     RIGHT
   }
 
+  /** All of the alignment targets for one reef face. */
+  public static record ReefFaceTargets(
+      int faceIndex,
+      Pose2d face,
+      Pose2d leftBranch,
+      Pose2d rightBranch,
+      Map<ReefHeight, Pose3d> leftBranchHeights,
+      Map<ReefHeight, Pose3d> rightBranchHeights) {
+
+    /** Returns the branch on the given side, at L1 height. */
+    public Pose2d branch(ReefSide side) {
+      return side == ReefSide.LEFT ? leftBranch : rightBranch;
+    }
+
+    /** Returns the 3D branch pose on the given side, at the given height. */
+    public Pose3d branch(ReefSide side, ReefHeight height) {
+      return (side == ReefSide.LEFT ? leftBranchHeights : rightBranchHeights).get(height);
+    }
+  }
+
+  /**
+   * Precomputed lookup of the nearest reef face. The field is divided into a uniform grid, and each
+   * cell that lies entirely within one face's Voronoi region stores that face. Cells that straddle
+   * a region boundary fall back to an exact scan of the faces, so results always match {@link
+   * Pose2d#nearest}, and no lookup allocates.
+   */
+  private static class ReefLookup {
+    private static final double cellSize = 0.1; // Meters
+    private static final int columns = (int) Math.ceil(fieldLength / cellSize);
+    private static final int rows = (int) Math.ceil(fieldWidth / cellSize);
+    private static final byte ambiguous = -1;
+
+    private static final double[] faceX = new double[Reef.centerFaces.length];
+    private static final double[] faceY = new double[Reef.centerFaces.length];
+    private static final byte[] nearestFace = new byte[columns * rows];
+    private static final ReefFaceTargets[] targets = new ReefFaceTargets[Reef.centerFaces.length];
+
+    static {
+      for (int face = 0; face < Reef.centerFaces.length; face++) {
+        faceX[face] = Reef.centerFaces[face].getX();
+        faceY[face] = Reef.centerFaces[face].getY();
+
+        var right = Reef.branchPositions.get(face * 2);
+        var left = Reef.branchPositions.get(face * 2 + 1);
+        targets[face] =
+            new ReefFaceTargets(
+                face,
+                Reef.centerFaces[face],
+                left.get(ReefHeight.L1).toPose2d(),
+                right.get(ReefHeight.L1).toPose2d(),
+                left,
+                right);
+      }
+
+      // The distance to a face changes by at most the cell diagonal across a cell, so the center's
+      // nearest face is nearest everywhere in the cell if it wins by more than that
+      double cellDiagonal = Math.hypot(cellSize, cellSize);
+      for (int row = 0; row < rows; row++) {
+        for (int column = 0; column < columns; column++) {
+          double x = (column + 0.5) * cellSize;
+          double y = (row + 0.5) * cellSize;
+          double nearest = Double.POSITIVE_INFINITY;
+          double secondNearest = Double.POSITIVE_INFINITY;
+          int nearestIndex = 0;
+          for (int face = 0; face < faceX.length; face++) {
+            double distance = Math.hypot(x - faceX[face], y - faceY[face]);
+            if (distance < nearest) {
+              secondNearest = nearest;
+              nearest = distance;
+              nearestIndex = face;
+            } else if (distance < secondNearest) {
+              secondNearest = distance;
+            }
+          }
+          nearestFace[row * columns + column] =
+              secondNearest - nearest > cellDiagonal ? (byte) nearestIndex : ambiguous;
+        }
+      }
+    }
+
+    static int nearestFaceIndex(double x, double y) {
+      int column = (int) Math.floor(x / cellSize);
+      int row = (int) Math.floor(y / cellSize);
+      if (column >= 0 && column < columns && row >= 0 && row < rows) {
+        byte face = nearestFace[row * columns + column];
+        if (face != ambiguous) {
+          return face;
+        }
+      }
+
+      // Near a region boundary or off the field, check every face
+      int nearestIndex = 0;
+      double nearestDistanceSquared = Double.POSITIVE_INFINITY;
+      for (int face = 0; face < faceX.length; face++) {
+        double dx = x - faceX[face];
+        double dy = y - faceY[face];
+        double distanceSquared = dx * dx + dy * dy;
+        if (distanceSquared < nearestDistanceSquared) {
+          nearestDistanceSquared = distanceSquared;
+          nearestIndex = face;
+        }
+      }
+      return nearestIndex;
+    }
+  }
+
+  /** Returns the face, branches, and branch heights of the reef face nearest to the pose. */
+  public static ReefFaceTargets getNearestReefTargets(Pose2d currentPose) {
+    return ReefLookup.targets[ReefLookup.nearestFaceIndex(currentPose.getX(), currentPose.getY())];
+  }
+
+  public static Pose2d getNearestReefFace(Pose2d currentPose) {
+    return getNearestReefTargets(currentPose).face();
+  }
+
   public static Pose2d getNearestReefBranch(Pose2d currentPose, ReefSide side) {
-    return FieldConstants.Reef.branchPositions
-        .get(
-            List.of(FieldConstants.Reef.centerFaces).indexOf(getNearestReefFace(currentPose)) * 2
-                + (side == ReefSide.LEFT ? 1 : 0))
-        .get(FieldConstants.ReefHeight.L1)
-        .toPose2d();
+    return getNearestReefTargets(currentPose).branch(side);
   }
 
   public static Pose2d getNearestCoralStation(Pose2d currentPose) {
@@ -11,6 +11,8 @@ import edu.wpi.first.wpilibj.util.Color;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
 import frc.robot.generated.TunerConstants;
+import frc.robot.util.LoggedTunableNumber;
+import frc.robot.util.LoopProfiler;
 import org.littletonrobotics.junction.LogFileUtil;
 import org.littletonrobotics.junction.LoggedRobot;
 import org.littletonrobotics.junction.Logger;
@@ -111,6 +113,9 @@ public class Robot extends LoggedRobot {
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our autonomous chooser on the dashboard.
     robotContainer = new RobotContainer();
+
+    // Time each command, now that every button binding exists
+    LoopProfiler.trackCommands();
   }
 
   /** This function is called periodically during all modes. */
@@ -124,7 +129,10 @@ public class Robot extends LoggedRobot {
     // finished or interrupted commands, and running subsystem periodic() methods.
     // This must be called from the robot's periodic block in order for anything in
     // the Command-based framework to work.
+    LoopProfiler.startCycle();
+    LoggedTunableNumber.updateAll();
     CommandScheduler.getInstance().run();
+    LoopProfiler.endCycle();
 
     // Return to normal thread priority
     Threads.setCurrentThreadPriority(false, 10);
@@ -189,5 +197,9 @@ public class Robot extends LoggedRobot {
 
   /** This function is called periodically whilst in simulation. */
   @Override
-  public void simulationPeriodic() {}
+  public void simulationPeriodic() {
+    if (Constants.currentMode == Constants.Mode.SIM) {
+      robotContainer.updateSimulation();
+    }
+  }
 }
@@ -23,10 +23,11 @@ import frc.robot.subsystems.climber.Climber;
 import frc.robot.subsystems.climber.ClimberIOSim;
 import frc.robot.subsystems.climber.ClimberIOSparkMax;
 import frc.robot.subsystems.drive.Drive;
-import frc.robot.subsystems.drive.GyroIO;
 import frc.robot.subsystems.drive.GyroIOPigeon2;
+import frc.robot.subsystems.drive.GyroIOSim;
 import frc.robot.subsystems.drive.ModuleIOSim;
 import frc.robot.subsystems.drive.ModuleIOTalonFX;
+import frc.robot.subsystems.drive.SwerveDriveSimulation;
 import frc.robot.subsystems.elevator.Elevator;
 import frc.robot.subsystems.elevator.elevator_motors.ElevatorIOSim;
 import frc.robot.subsystems.elevator.elevator_motors.ElevatorIOSparkMax;
@@ -46,6 +47,7 @@ import frc.robot.subsystems.vision.VisionConstants;
 import frc.robot.subsystems.vision.VisionIO;
 import frc.robot.subsystems.vision.VisionIOPhotonVision;
 import frc.robot.subsystems.vision.VisionIOPhotonVisionSim;
+import frc.robot.subsystems.vision.VisionIOThreaded;
 import frc.robot.util.ExtenderConstraints;
 import frc.robot.util.LoggedTunableNumber;
 import java.util.function.Supplier;
@@ -61,6 +63,7 @@ public class RobotContainer {
 
   // Subsystems
   private final Drive drive;
+  private final SwerveDriveSimulation driveSimulation;
   private final Vision vision;
   private final Intake intakeWheels;
   private final EndEffector endEffectorWheels;
@@ -84,42 +87,68 @@ public class RobotContainer {
 
   /** The container for the robot. Contains subsystems, OI devices, and commands. */
   public RobotContainer() {
+    this(true);
+  }
+
+  /**
+   * Creates the container.
+   *
+   * @param simulateCameras Whether to run the PhotonVision camera simulation in sim mode. It is
+   *     by far the slowest part of the sim, so headless runs can turn it off.
+   */
+  public RobotContainer(boolean simulateCameras) {
 
     // Real robot, instantiate hardware IO implementations
 
     switch (Constants.currentMode) {
       case SIM:
         // Sim robot, instantiate sim hardware IO implementations
+        driveSimulation = new SwerveDriveSimulation(new Pose2d(3, 3, Rotation2d.kZero));
         drive =
             new Drive(
-                new GyroIO() {},
-                new ModuleIOSim(TunerConstants.FrontLeft),
-                new ModuleIOSim(TunerConstants.FrontRight),
-                new ModuleIOSim(TunerConstants.BackLeft),
-                new ModuleIOSim(TunerConstants.BackRight)
+                new GyroIOSim(driveSimulation),
+                new ModuleIOSim(TunerConstants.FrontLeft, driveSimulation),
+                new ModuleIOSim(TunerConstants.FrontRight, driveSimulation),
+                new ModuleIOSim(TunerConstants.BackLeft, driveSimulation),
+                new ModuleIOSim(TunerConstants.BackRight, driveSimulation)
                 // new Vision()
                 );
-        vision =
-            new Vision(
-                drive,
-                drive,
-                new VisionIO[] {
-                  new VisionIOPhotonVisionSim(
-                      VisionConstants.camera0Name, VisionConstants.robotToCamera0, drive::getPose),
-                  new VisionIOPhotonVisionSim(
-                      VisionConstants.camera1Name, VisionConstants.robotToCamera1, drive::getPose),
-                  new VisionIOPhotonVisionSim(
-                      VisionConstants.camera2Name, VisionConstants.robotToCamera2, drive::getPose)
-                });
+        if (simulateCameras) {
+          vision =
+              new Vision(
+                  drive,
+                  drive,
+                  new VisionIO[] {
+                    new VisionIOPhotonVisionSim(
+                        VisionConstants.camera0Name,
+                        VisionConstants.robotToCamera0,
+                        driveSimulation::getPose),
+                    new VisionIOPhotonVisionSim(
+                        VisionConstants.camera1Name,
+                        VisionConstants.robotToCamera1,
+                        driveSimulation::getPose),
+                    new VisionIOPhotonVisionSim(
+                        VisionConstants.camera2Name,
+                        VisionConstants.robotToCamera2,
+                        driveSimulation::getPose)
+                  });
+        } else {
+          vision =
+              new Vision(
+                  drive,
+                  drive,
+                  new VisionIO[] {new VisionIO() {}, new VisionIO() {}, new VisionIO() {}});
+        }
 
         endEffectorWheels = new EndEffector(new FlywheelIOSim());
         elevator = new Elevator(new ElevatorIOSim(), new LimitSwitchSensorIOSim());
         pivot = new Pivot(new PivotIOSim());
-        intakeWheels = new Intake(new IntakeWheelIOSim());
+        intakeWheels = new Intake(new IntakeWheelIOSim(40));
         climber = new Climber(new ClimberIOSim(), 9, 7);
         break;
       default:
         // Real robot, instantiate hardware IO implementations
+        driveSimulation = null;
         drive =
             new Drive(
                 new GyroIOPigeon2(),
@@ -130,18 +159,18 @@ public class RobotContainer {
                 // new Vision()
                 );
 
-        vision =
-            new Vision(
-                drive,
-                drive,
-                new VisionIO[] {
-                  new VisionIOPhotonVision(
-                      VisionConstants.camera0Name, VisionConstants.robotToCamera0),
-                  new VisionIOPhotonVision(
-                      VisionConstants.camera1Name, VisionConstants.robotToCamera1),
-                  new VisionIOPhotonVision(
-                      VisionConstants.camera2Name, VisionConstants.robotToCamera2)
-                });
+        VisionIO[] cameras =
+            new VisionIO[] {
+              new VisionIOPhotonVision(VisionConstants.camera0Name, VisionConstants.robotToCamera0),
+              new VisionIOPhotonVision(VisionConstants.camera1Name, VisionConstants.robotToCamera1),
+              new VisionIOPhotonVision(VisionConstants.camera2Name, VisionConstants.robotToCamera2)
+            };
+        if (VisionConstants.useVisionThreads && Constants.currentMode == Constants.Mode.REAL) {
+          for (int i = 0; i < cameras.length; i++) {
+            cameras[i] = new VisionIOThreaded(cameras[i], "VisionCamera" + i);
+          }
+        }
+        vision = new Vision(drive, drive, cameras);
 
         endEffectorWheels = new EndEffector(new FlywheelIOSparkMax(23));
         elevator =
@@ -433,7 +462,7 @@ public class RobotContainer {
     // new Trigger(DriverStation::isEnabled).onTrue(elevator.home());
 
     elevator.setDefaultCommand(
-        ExtenderCommands.goToHeightThenPivot(
+        ExtenderCommands.followTrajectory(
             elevator,
             pivot,
             extenderConstraints,
@@ -516,6 +545,27 @@ public class RobotContainer {
             Commands.runOnce(() -> controllerState.getCurrentSetpoint().degreesFromVertical += 1));
   }
 
+  /** Steps the physics sims, once per loop after the scheduler runs. Only used in sim mode. */
+  public void updateSimulation() {
+    driveSimulation.update();
+    SimBattery.update();
+  }
+
+  /** Returns the drivetrain physics sim, which is null unless in sim mode. */
+  public SwerveDriveSimulation getDriveSimulation() {
+    return driveSimulation;
+  }
+
+  /** Returns the drive subsystem. */
+  public Drive getDrive() {
+    return drive;
+  }
+
+  /** Returns the end effector wheels subsystem. */
+  public EndEffector getEndEffector() {
+    return endEffectorWheels;
+  }
+
   /**
    * Use this to pass the autonomous command to the main {@link Robot} class.
    *
@@ -0,0 +1,71 @@
+package frc.robot;
+
+import edu.wpi.first.wpilibj.RobotController;
+import edu.wpi.first.wpilibj.simulation.BatterySim;
+import edu.wpi.first.wpilibj.simulation.RoboRioSim;
+import java.util.Arrays;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * The battery shared by the sim IO implementations. Each sim IO is a source that reports the
+ * current it draws, and once per loop the total is used to work out how far the battery sags,
+ * using {@link BatterySim}. The sagged voltage is what the sim IOs can apply to their mechanisms
+ * on the next loop, and is given to the simulated roboRIO so {@link
+ * RobotController#getBatteryVoltage()} matches.
+ *
+ * <p>Below the brownout voltage the roboRIO disables the motor outputs, so while the battery is
+ * browned out the sim IOs get no voltage.
+ */
+public final class SimBattery {
+  private static final double NOMINAL_VOLTAGE = 12.0;
+
+  // Internal resistance of a typical FRC battery plus the main wiring
+  private static final double RESISTANCE_OHMS = 0.02;
+
+  private static String[] currentKeys = new String[0];
+  private static double[] currents = new double[0];
+  private static double voltage = NOMINAL_VOLTAGE;
+  private static boolean brownedOut = false;
+
+  private SimBattery() {}
+
+  /**
+   * Adds a source of current draw.
+   *
+   * @param name The name the source's current is logged under.
+   * @return The source's ID, for {@link #setCurrent(int, double)}.
+   */
+  public static int addSource(String name) {
+    int source = currents.length;
+    currentKeys = Arrays.copyOf(currentKeys, source + 1);
+    currents = Arrays.copyOf(currents, source + 1);
+    currentKeys[source] = "SimBattery/CurrentAmps/" + name;
+    return source;
+  }
+
+  /** Sets the current a source draws, until it is set again. */
+  public static void setCurrent(int source, double amps) {
+    currents[source] = Math.abs(amps);
+  }
+
+  /** Returns the voltage the motor controllers can apply, which is zero during a brownout. */
+  public static double getAvailableVoltage() {
+    return brownedOut ? 0.0 : voltage;
+  }
+
+  /** Updates the battery voltage from the current of every source. Called once per loop. */
+  public static void update() {
+    voltage = BatterySim.calculateLoadedBatteryVoltage(NOMINAL_VOLTAGE, RESISTANCE_OHMS, currents);
+    brownedOut = voltage < RobotController.getBrownoutVoltage();
+    RoboRioSim.setVInVoltage(voltage);
+
+    double totalCurrent = 0.0;
+    for (int i = 0; i < currents.length; i++) {
+      totalCurrent += currents[i];
+      Logger.recordOutput(currentKeys[i], currents[i]);
+    }
+    Logger.recordOutput("SimBattery/Voltage", voltage);
+    Logger.recordOutput("SimBattery/TotalCurrentAmps", totalCurrent);
+    Logger.recordOutput("SimBattery/BrownedOut", brownedOut);
+  }
+}
@@ -0,0 +1,32 @@
+package frc.robot;
+
+/**
+ * Random variation applied by the sim IO implementations, so Monte Carlo runs of the autos (see
+ * {@code AutoMonteCarlo}) don't all behave identically. The defaults apply no variation, so normal
+ * sim runs are unaffected.
+ */
+public final class SimVariation {
+  /** Multiplier on the friction between the wheels and the carpet, to model wheel slip. */
+  public static double driveTraction = 1.0;
+
+  /**
+   * Multiplier on the voltage of the elevator and pivot motors, which scales their top speed, to
+   * model mechanism timing.
+   */
+  public static double mechanismSpeedScale = 1.0;
+
+  /** Average and standard deviation of the simulated cameras' calibration error, in pixels. */
+  public static double visionCalibErrorPixels = 0.0;
+
+  public static double visionCalibErrorStdDevPixels = 0.0;
+
+  private SimVariation() {}
+
+  /** Removes all variation. */
+  public static void reset() {
+    driveTraction = 1.0;
+    mechanismSpeedScale = 1.0;
+    visionCalibErrorPixels = 0.0;
+    visionCalibErrorStdDevPixels = 0.0;
+  }
+}
@@ -78,12 +78,13 @@ public class DriveCommands {
     // Construct command
     return Commands.run(
             () -> {
-              // Name constants
+              // Name constants (the approach pose is looked up once per cycle)
+              Pose2d approachPose = approachSupplier.get();
               Translation2d currentTranslation = drive.getPose().getTranslation();
-              Translation2d approachTranslation = approachSupplier.get().getTranslation();
+              Translation2d approachTranslation = approachPose.getTranslation();
               double distanceToApproach = currentTranslation.getDistance(approachTranslation);
 
-              Rotation2d alignmentDirection = approachSupplier.get().getRotation();
+              Rotation2d alignmentDirection = approachPose.getRotation();
 
               // Find lateral distance from goal
               Translation2d goalTranslation =
@@ -105,7 +106,7 @@ public class DriveCommands {
               // Calculate total linear velocity
               Translation2d linearVelocity =
                   getLinearVelocityFromJoysticks(0, ySupplier.getAsDouble())
-                      .rotateBy(approachSupplier.get().getRotation())
+                      .rotateBy(alignmentDirection)
                       .rotateBy(Rotation2d.kCCW_90deg)
                       .plus(offsetVector);
 
@@ -116,11 +117,7 @@ public class DriveCommands {
               double omega =
                   angleController.calculate(
                       drive.getRotation().getRadians(),
-                      approachSupplier
-                          .get()
-                          .getRotation()
-                          .rotateBy(Rotation2d.k180deg)
-                          .getRadians());
+                      alignmentDirection.rotateBy(Rotation2d.k180deg).getRadians());
 
               // Convert to field relative speeds & send command
               ChassisSpeeds speeds =
@@ -1,5 +1,8 @@
 package frc.robot.commands;
 
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Commands;
 import frc.robot.ControllerState;
@@ -8,15 +11,26 @@ import frc.robot.subsystems.elevator.Elevator;
 import frc.robot.subsystems.end_effector.EndEffector;
 import frc.robot.subsystems.pivot.Pivot;
 import frc.robot.util.ExtenderConstraints;
+import frc.robot.util.ExtenderTrajectory;
 import frc.robot.util.LoggedTunableNumber;
 import java.util.function.DoubleSupplier;
+import org.littletonrobotics.junction.Logger;
 
 public class ExtenderCommands {
 
   private static final LoggedTunableNumber heightAtGoalTolerance;
+  private static final LoggedTunableNumber elevatorMaxVelocity;
+  private static final LoggedTunableNumber elevatorMaxAcceleration;
+  private static final LoggedTunableNumber pivotMaxVelocity;
+  private static final LoggedTunableNumber pivotMaxAcceleration;
 
   static {
     heightAtGoalTolerance = new LoggedTunableNumber("Extender/HeightAtGoalTolerance", 5.0);
+    elevatorMaxVelocity = new LoggedTunableNumber("Extender/ElevatorMaxInchesPerSec", 60.0);
+    elevatorMaxAcceleration =
+        new LoggedTunableNumber("Extender/ElevatorMaxInchesPerSecSquared", 200.0);
+    pivotMaxVelocity = new LoggedTunableNumber("Extender/PivotMaxDegreesPerSec", 180.0);
+    pivotMaxAcceleration = new LoggedTunableNumber("Extender/PivotMaxDegreesPerSecSquared", 720.0);
   }
 
   public static Command goToHeightThenPivot(
@@ -43,6 +57,115 @@ public class ExtenderCommands {
         .withName("Extender Movement With Constraints");
   }
 
+  /**
+   * Moves the elevator and pivot at the same time along an {@link ExtenderTrajectory}, which keeps
+   * the pivot inside the angle constraints the whole way. A new trajectory is planned whenever the
+   * goal changes, starting from wherever the current one is.
+   */
+  public static Command followTrajectory(
+      Elevator elevator,
+      Pivot pivot,
+      ExtenderConstraints constraints,
+      DoubleSupplier inchesFromGround,
+      DoubleSupplier degreesFromVertical) {
+    var follower =
+        new TrajectoryFollower(elevator, pivot, constraints, inchesFromGround, degreesFromVertical);
+    return elevator
+        .followSetpoint(follower::getHeightInches, follower::getHeightVelocity)
+        .alongWith(
+            pivot.pivotConstraintsCommand(
+                elevator::getHeightInches, constraints, follower::getDegreesFromVertical))
+        .beforeStarting(follower::reset)
+        .withName("Extender Trajectory Following");
+  }
+
+  private static class TrajectoryFollower {
+    private final Elevator elevator;
+    private final Pivot pivot;
+    private final ExtenderConstraints constraints;
+    private final DoubleSupplier inchesFromGround;
+    private final DoubleSupplier degreesFromVertical;
+
+    private ExtenderTrajectory trajectory = null;
+    private double startTimestamp = 0;
+    private double goalHeight = Double.NaN;
+    private double goalAngle = Double.NaN;
+
+    private TrajectoryFollower(
+        Elevator elevator,
+        Pivot pivot,
+        ExtenderConstraints constraints,
+        DoubleSupplier inchesFromGround,
+        DoubleSupplier degreesFromVertical) {
+      this.elevator = elevator;
+      this.pivot = pivot;
+      this.constraints = constraints;
+      this.inchesFromGround = inchesFromGround;
+      this.degreesFromVertical = degreesFromVertical;
+    }
+
+    private void reset() {
+      trajectory = null;
+      goalHeight = Double.NaN;
+      goalAngle = Double.NaN;
+    }
+
+    private double getHeightInches() {
+      double now = update();
+      return trajectory.getHeightInches(now - startTimestamp);
+    }
+
+    private double getHeightVelocity() {
+      double now = update();
+      return trajectory.getHeightVelocity(now - startTimestamp);
+    }
+
+    private double getDegreesFromVertical() {
+      double now = update();
+      return trajectory.getDegreesFromVertical(now - startTimestamp);
+    }
+
+    /** Plans a new trajectory if the goal changed, and returns the current time. */
+    private double update() {
+      double now = Timer.getFPGATimestamp();
+      double height = inchesFromGround.getAsDouble();
+      double angle = degreesFromVertical.getAsDouble();
+      if (trajectory != null && height == goalHeight && angle == goalAngle) {
+        return now;
+      }
+
+      State startHeight;
+      State startAngle;
+      if (trajectory == null) {
+        startHeight = new State(elevator.getHeightInches(), 0);
+        startAngle = new State(pivot.getPositionDegreesFromVertical(), 0);
+      } else {
+        double t = now - startTimestamp;
+        startHeight = new State(trajectory.getHeightInches(t), trajectory.getHeightVelocity(t));
+        startAngle =
+            new State(trajectory.getDegreesFromVertical(t), trajectory.getAngleVelocity(t));
+      }
+
+      trajectory =
+          ExtenderTrajectory.generate(
+              constraints,
+              new TrapezoidProfile.Constraints(
+                  elevatorMaxVelocity.get(), elevatorMaxAcceleration.get()),
+              new TrapezoidProfile.Constraints(pivotMaxVelocity.get(), pivotMaxAcceleration.get()),
+              startHeight,
+              startAngle,
+              height,
+              angle);
+      startTimestamp = now;
+      goalHeight = height;
+      goalAngle = angle;
+
+      Logger.recordOutput("Extender/TrajectoryTimeSeconds", trajectory.getTotalTimeSeconds());
+      Logger.recordOutput("Extender/TrajectoryFeasible", trajectory.isFeasible());
+      return now;
+    }
+  }
+
   public static Command goToHeightNoConstraints(
       Elevator elevator,
       Pivot pivot,
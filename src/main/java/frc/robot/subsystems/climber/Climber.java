@@ -6,12 +6,19 @@ import edu.wpi.first.wpilibj2.command.Command.InterruptionBehavior;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.util.LoggedTunableNumber;
+import frc.robot.util.LoopProfiler;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Climber extends SubsystemBase {
 
+  private static final LoopProfiler.Section periodicTiming = LoopProfiler.section("Climb/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Climb/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Climb/ProcessInputs");
+
   private LoggedTunableNumber maxAmps = new LoggedTunableNumber("Climb/Max Amps", 40.0);
   private LoggedTunableNumber maxSpeedUp = new LoggedTunableNumber("Climb/Max Speed Up", 1.0);
   private LoggedTunableNumber maxSpeedDown = new LoggedTunableNumber("Climb/Max Speed Down", 1);
@@ -35,12 +42,17 @@ public class Climber extends SubsystemBase {
   }
 
   public void periodic() {
+    periodicTiming.start();
+    updateInputsTiming.start();
     motorIO.updateInputs(inputs);
+    updateInputsTiming.stop();
     motorIO.periodic();
     Logger.recordOutput(
         "Climb/CurrentCommand",
         getCurrentCommand() != null ? getCurrentCommand().getName() : "None");
+    processInputsTiming.start();
     Logger.processInputs("Climb", inputs);
+    processInputsTiming.stop();
 
     if (this.intakeReleased()) {
       Logger.recordOutput("Climb/IntakeState", "Intake Released");
@@ -49,6 +61,8 @@ public class Climber extends SubsystemBase {
     }
 
     motorIO.setMaxAmps((int) maxAmps.get());
+
+    periodicTiming.stop();
   }
 
   public void toggleIntake() {
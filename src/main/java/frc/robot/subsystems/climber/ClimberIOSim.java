@@ -1,41 +1,76 @@
 package frc.robot.subsystems.climber;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.SimBattery;
+
+/**
+ * Physics sim implementation of climber IO. The climber is simulated as a geared NEO with no load
+ * on it, and runs off the shared {@link SimBattery}.
+ */
 public class ClimberIOSim implements ClimberIO {
+  private static final DCMotor GEARBOX = DCMotor.getNEO(1);
+  private static final double GEARING = 5.0;
+  private static final double MOI_KG_METERS_SQUARED = 0.01;
+
+  // Motor heating isn't simulated
+  private static final double TEMP_CELSIUS = 25.0;
+
+  private final DCMotorSim sim =
+      new DCMotorSim(
+          LinearSystemId.createDCMotorSystem(GEARBOX, MOI_KG_METERS_SQUARED, GEARING), GEARBOX);
+  private final int batterySource = SimBattery.addSource("Climber");
 
-  private double positionRads = 0.0;
-  private double velocityRadsPerSec = 0.0;
+  private double dutyCycle = 0.0;
+  private double maxAmps = 40;
+  private double appliedVolts = 0.0;
 
   @Override
   public void periodic() {
-    positionRads += velocityRadsPerSec * 0.02; // Simulate 20ms periodic update
+    double volts = MathUtil.clamp(dutyCycle, -1, 1) * SimBattery.getAvailableVoltage();
+
+    // The current limit caps the torque, which at a given speed caps the voltage
+    double motorVelocityRadsPerSec = sim.getAngularVelocityRadPerSec() * GEARING;
+    double maxTorque = GEARBOX.getTorque(maxAmps);
+    appliedVolts =
+        MathUtil.clamp(
+            volts,
+            GEARBOX.getVoltage(-maxTorque, motorVelocityRadsPerSec),
+            GEARBOX.getVoltage(maxTorque, motorVelocityRadsPerSec));
+
+    sim.setInputVoltage(appliedVolts);
+    sim.update(0.02);
+    SimBattery.setCurrent(batterySource, sim.getCurrentDrawAmps());
   }
 
   @Override
   public void updateInputs(ClimberIOInputs inputs) {
-    inputs.positionRads = positionRads;
-    inputs.velocityRadsPerSec = velocityRadsPerSec;
-    inputs.appliedVoltage = 0.0; // No voltage in simulation
-    inputs.outputCurrentAmps = 0.0; // No current in simulation
-    inputs.tempCelsius = 0.0; // No temperature in simulation
+    inputs.positionRads = sim.getAngularPositionRad();
+    inputs.velocityRadsPerSec = sim.getAngularVelocityRadPerSec();
+    inputs.appliedVoltage = appliedVolts;
+    inputs.outputCurrentAmps = Math.abs(sim.getCurrentDrawAmps());
+    inputs.tempCelsius = TEMP_CELSIUS;
   }
 
   @Override
   public void setMaxAmps(int maxAmps) {
-    // No-op for simulation
+    this.maxAmps = maxAmps;
   }
 
   @Override
   public void setVelocity(double normalizedVelocity) {
-    this.velocityRadsPerSec = normalizedVelocity * 100;
+    dutyCycle = normalizedVelocity;
   }
 
   @Override
   public double getPositionRads() {
-    return positionRads;
+    return sim.getAngularPositionRad();
   }
 
   @Override
   public void zeroEncoder() {
-    positionRads = 0.0;
+    sim.setAngle(0.0);
   }
 }
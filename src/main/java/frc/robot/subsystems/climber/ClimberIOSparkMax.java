@@ -4,27 +4,31 @@ import com.revrobotics.spark.SparkMax;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
-import frc.robot.util.SparkMaxUtil;
+import frc.robot.util.SparkMaxConfigWriter;
 
 public class ClimberIOSparkMax implements ClimberIO {
   private final SparkMax motor;
 
-  private final SparkMaxConfig config = new SparkMaxConfig();
+  private final SparkMaxConfigWriter config;
 
   public ClimberIOSparkMax(int id) {
     this.motor = new SparkMax(id, SparkMax.MotorType.kBrushless);
 
-    var config = new SparkMaxConfig();
+    this.config = new SparkMaxConfigWriter(motor);
 
-    config.idleMode(SparkMaxConfig.IdleMode.kBrake);
+    config.setIdleMode(SparkMaxConfig.IdleMode.kBrake);
 
-    SparkMaxUtil.configureMotor(motor, config);
+    config.apply();
+  }
+
+  @Override
+  public void periodic() {
+    config.apply();
   }
 
   @Override
   public void setMaxAmps(int maxAmps) {
-    config.smartCurrentLimit(maxAmps);
-    SparkMaxUtil.configureMotor(motor, config);
+    config.setSmartCurrentLimit(maxAmps);
   }
 
   @Override
@@ -34,8 +38,7 @@ public class ClimberIOSparkMax implements ClimberIO {
 
   @Override
   public void setMotorInverted(boolean inverted) {
-    config.inverted(inverted);
-    SparkMaxUtil.configureMotor(motor, config);
+    config.setInverted(inverted);
   }
 
   @Override
@@ -20,22 +20,22 @@ import com.pathplanner.lib.auto.AutoBuilder;
 import com.pathplanner.lib.config.PIDConstants;
 import com.pathplanner.lib.config.RobotConfig;
 import com.pathplanner.lib.controllers.PPHolonomicDriveController;
+import com.pathplanner.lib.util.DriveFeedforwards;
 import com.pathplanner.lib.util.PathPlannerLogging;
 import edu.wpi.first.hal.FRCNetComm.tInstances;
 import edu.wpi.first.hal.FRCNetComm.tResourceType;
 import edu.wpi.first.hal.HAL;
 import edu.wpi.first.math.Matrix;
-import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.Alert.AlertType;
 import edu.wpi.first.wpilibj.DriverStation;
@@ -46,12 +46,34 @@ import frc.robot.Constants;
 import frc.robot.Constants.Mode;
 import frc.robot.generated.TunerConstants;
 import frc.robot.subsystems.vision.Vision;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import frc.robot.util.LoopProfiler;
+import java.util.Arrays;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Drive extends SubsystemBase implements Vision.VisionConsumer {
+  private static final LoopProfiler.Section periodicTiming = LoopProfiler.section("Drive/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Drive/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Drive/ProcessInputs");
+
+  private static final SwerveModuleState[] EMPTY_STATES = new SwerveModuleState[] {};
+
+  // Copies of the setpoints for the modules to optimize, so the generator's stay unoptimized
+  private final SwerveModuleState[] optimizedStates =
+      new SwerveModuleState[] {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
+      };
+
+  // Feedforward forces for each module, robot relative and along each wheel
+  private final double[] feedforwardForcesX = new double[4];
+  private final double[] feedforwardForcesY = new double[4];
+  private final double[] feedforwardNewtons = new double[4];
+
   // TunerConstants doesn't include these constants, so they are declared locally
   static final double ODOMETRY_FREQUENCY =
       new CANBus(TunerConstants.DrivetrainConstants.CANBusName).isNetworkFD() ? 250.0 : 100.0;
@@ -64,7 +86,6 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
               Math.hypot(TunerConstants.BackLeft.LocationX, TunerConstants.BackLeft.LocationY),
               Math.hypot(TunerConstants.BackRight.LocationX, TunerConstants.BackRight.LocationY)));
 
-  static final Lock odometryLock = new ReentrantLock();
   private final GyroIO gyroIO;
   // private final Vision vision;
   private final GyroIOInputsAutoLogged gyroInputs = new GyroIOInputsAutoLogged();
@@ -74,16 +95,27 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
       new Alert("Disconnected gyro, using kinematics as fallback.", AlertType.kError);
 
   private SwerveDriveKinematics kinematics = new SwerveDriveKinematics(getModuleTranslations());
-  private Rotation2d rawGyroRotation = new Rotation2d();
-  private SwerveModulePosition[] lastModulePositions = // For delta tracking
-      new SwerveModulePosition[] {
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition(),
-        new SwerveModulePosition()
-      };
-  private SwerveDrivePoseEstimator poseEstimator =
-      new SwerveDrivePoseEstimator(kinematics, rawGyroRotation, lastModulePositions, new Pose2d());
+  private final SwerveSetpointGenerator setpointGenerator =
+      new SwerveSetpointGenerator(
+          getModuleTranslations(),
+          TunerConstants.kSpeedAt12Volts.in(MetersPerSecond),
+          Units.rotationsToRadians(
+              ModuleIOTalonFX.TURN_CRUISE_ROTOR_VELOCITY
+                  / TunerConstants.FrontLeft.SteerMotorGearRatio));
+  private double rawGyroRadians = 0.0;
+  private final OdometryWorkspace odometryWorkspace =
+      new OdometryWorkspace(getModuleTranslations()); // For delta tracking without allocation
+  private SwervePoseEstimator poseEstimator =
+      new SwervePoseEstimator(
+          getModuleTranslations(),
+          Rotation2d.kZero,
+          new SwerveModulePosition[] {
+            new SwerveModulePosition(),
+            new SwerveModulePosition(),
+            new SwerveModulePosition(),
+            new SwerveModulePosition()
+          },
+          new Pose2d());
 
   public Drive(
       GyroIO gyroIO,
@@ -124,16 +156,16 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
       e.printStackTrace();
       return;
     }
+    setpointGenerator.setRobotConfig(config);
 
     // Configure AutoBuilder last
     AutoBuilder.configure(
         this::getPose, // Robot pose supplier
         this::setPose, // Method to reset odometry (will be called if your auto has a starting pose)
         this::getChassisSpeeds, // ChassisSpeeds supplier. MUST BE ROBOT RELATIVE
-        (speeds, feedforwards) ->
-            this.runVelocity(
-                speeds), // Method that will drive the robot given ROBOT RELATIVE ChassisSpeeds.
-        // Also optionally outputs individual module feedforwards
+        // Method that will drive the robot given ROBOT RELATIVE ChassisSpeeds, along with the
+        // individual module feedforwards
+        (speeds, feedforwards) -> this.runVelocity(speeds, feedforwards),
         new PPHolonomicDriveController( // PPHolonomicController is the built in path following
             // controller for holonomic drive trains
             new PIDConstants(5.0, 0.0, 0.0), // Translation PID constants
@@ -167,6 +199,7 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
 
   @Override
   public void periodic() {
+    periodicTiming.start();
 
     // TODO: Vishnu why is this commented out?
 
@@ -189,61 +222,65 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
     //       poseEstimator.addVisionMeasurement(
     //           est.estimatedPose.toPose2d(), est.timestampSeconds, estStdDevs);
     //     });
-    odometryLock.lock(); // Prevents odometry updates while reading data
+    // Latch one set of odometry frames so the gyro and every module read the same samples
+    PhoenixOdometryThread.getInstance().readFrames();
+    updateInputsTiming.start();
     gyroIO.updateInputs(gyroInputs);
+    updateInputsTiming.stop();
+    processInputsTiming.start();
     Logger.processInputs("Drive/Gyro", gyroInputs);
+    processInputsTiming.stop();
     for (var module : modules) {
       module.periodic();
     }
-    odometryLock.unlock();
+    Logger.recordOutput(
+        "Odometry/DroppedFrames",
+        PhoenixOdometryThread.getInstance().getFrames().getDroppedFrames());
 
-    // Stop moving when disabled
+    // Stop moving when disabled, and start the setpoints from the modules' states once enabled
     if (DriverStation.isDisabled()) {
       for (var module : modules) {
         module.stop();
       }
+      resetSetpoints();
     }
 
     // Log empty setpoint states when disabled
     if (DriverStation.isDisabled()) {
-      Logger.recordOutput("SwerveStates/Setpoints", new SwerveModuleState[] {});
-      Logger.recordOutput("SwerveStates/SetpointsOptimized", new SwerveModuleState[] {});
+      Logger.recordOutput("SwerveStates/Setpoints", EMPTY_STATES);
+      Logger.recordOutput("SwerveStates/SetpointsOptimized", EMPTY_STATES);
     }
 
     // Update odometry
     double[] sampleTimestamps =
-        modules[0].getOdometryTimestamps(); // All signals are sampled together
+        modules[0].getOdometryTimestamps(); // All signals are published in the same frames
     int sampleCount = sampleTimestamps.length;
     for (int i = 0; i < sampleCount; i++) {
-      // Read wheel positions and deltas from each module
-      SwerveModulePosition[] modulePositions = new SwerveModulePosition[4];
-      SwerveModulePosition[] moduleDeltas = new SwerveModulePosition[4];
-      for (int moduleIndex = 0; moduleIndex < 4; moduleIndex++) {
-        modulePositions[moduleIndex] = modules[moduleIndex].getOdometryPositions()[i];
-        moduleDeltas[moduleIndex] =
-            new SwerveModulePosition(
-                modulePositions[moduleIndex].distanceMeters
-                    - lastModulePositions[moduleIndex].distanceMeters,
-                modulePositions[moduleIndex].angle);
-        lastModulePositions[moduleIndex] = modulePositions[moduleIndex];
-      }
+      // Read wheel positions and heading change from each module
+      double kinematicDtheta = odometryWorkspace.loadSample(modules, i);
 
       // Update gyro angle
       if (gyroInputs.connected) {
         // Use the real gyro angle
-        rawGyroRotation = gyroInputs.odometryYawPositions[i];
+        rawGyroRadians = gyroInputs.odometryYawPositions[i].getRadians();
       } else {
         // Use the angle delta from the kinematics and module deltas
-        Twist2d twist = kinematics.toTwist2d(moduleDeltas);
-        rawGyroRotation = rawGyroRotation.plus(new Rotation2d(twist.dtheta));
+        rawGyroRadians += kinematicDtheta;
       }
 
       // Apply update
-      poseEstimator.updateWithTime(sampleTimestamps[i], rawGyroRotation, modulePositions);
+      poseEstimator.updateWithTime(
+          sampleTimestamps[i],
+          rawGyroRadians,
+          odometryWorkspace.distancesMeters,
+          odometryWorkspace.angleCos,
+          odometryWorkspace.angleSin);
     }
 
     // Update gyro alert
     gyroDisconnectedAlert.set(!gyroInputs.connected && Constants.currentMode != Mode.SIM);
+
+    periodicTiming.stop();
   }
 
   @Override
@@ -258,32 +295,64 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
   }
 
   /**
-   * Runs the drive at the desired velocity.
+   * Runs the drive at the desired velocity. The module setpoints are limited to what the drivetrain
+   * can reach from the previous setpoints this cycle, see {@link SwerveSetpointGenerator}.
    *
    * @param speeds Speeds in meters/sec
    */
   public void runVelocity(ChassisSpeeds speeds) {
+    Arrays.fill(feedforwardForcesX, 0.0);
+    Arrays.fill(feedforwardForcesY, 0.0);
+    runSetpoints(speeds);
+  }
 
-    speeds =
-        new ChassisSpeeds(
-            speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, -speeds.omegaRadiansPerSecond);
+  /**
+   * Runs the drive at the desired velocity, with the force each module should push with added as a
+   * feedforward. Used for path following, where the forces come from the path's accelerations.
+   *
+   * @param speeds Speeds in meters/sec
+   * @param feedforwards Module feedforwards from PathPlanner, FL, FR, BL, BR
+   */
+  public void runVelocity(ChassisSpeeds speeds, DriveFeedforwards feedforwards) {
+    double[] forcesX = feedforwards.robotRelativeForcesXNewtons();
+    double[] forcesY = feedforwards.robotRelativeForcesYNewtons();
+
+    // The modules are symmetric about the center, so the average force accelerates the robot and
+    // the rest of each module's force turns it. The turning part is mirrored, like the angular
+    // velocity is negated for the setpoints.
+    double averageForceX = (forcesX[0] + forcesX[1] + forcesX[2] + forcesX[3]) / 4.0;
+    double averageForceY = (forcesY[0] + forcesY[1] + forcesY[2] + forcesY[3]) / 4.0;
+    for (int i = 0; i < 4; i++) {
+      feedforwardForcesX[i] = 2.0 * averageForceX - forcesX[i];
+      feedforwardForcesY[i] = 2.0 * averageForceY - forcesY[i];
+    }
+    runSetpoints(speeds);
+  }
 
+  private void runSetpoints(ChassisSpeeds speeds) {
     // Calculate module setpoints
-    ChassisSpeeds discreteSpeeds = ChassisSpeeds.discretize(speeds, 0.02);
-    SwerveModuleState[] setpointStates = kinematics.toSwerveModuleStates(discreteSpeeds);
-    SwerveDriveKinematics.desaturateWheelSpeeds(setpointStates, TunerConstants.kSpeedAt12Volts);
+    setpointGenerator.update(
+        speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, -speeds.omegaRadiansPerSecond, 0.02);
+    SwerveModuleState[] setpointStates = setpointGenerator.setpointStates;
 
     // Log unoptimized setpoints and setpoint speeds
     Logger.recordOutput("SwerveStates/Setpoints", setpointStates);
-    Logger.recordOutput("SwerveChassisSpeeds/Setpoints", discreteSpeeds);
+    Logger.recordOutput("SwerveChassisSpeeds/Setpoints", setpointGenerator.setpointSpeeds);
+    Logger.recordOutput("SwerveChassisSpeeds/Desired", setpointGenerator.desiredSpeeds);
 
-    // Send setpoints to modules
+    // Send setpoints to modules, with the part of each feedforward force along the wheel
     for (int i = 0; i < 4; i++) {
-      modules[i].runSetpoint(setpointStates[i]);
+      Rotation2d angle = setpointStates[i].angle;
+      feedforwardNewtons[i] =
+          feedforwardForcesX[i] * angle.getCos() + feedforwardForcesY[i] * angle.getSin();
+      optimizedStates[i].speedMetersPerSecond = setpointStates[i].speedMetersPerSecond;
+      optimizedStates[i].angle = angle;
+      modules[i].runSetpoint(optimizedStates[i], feedforwardNewtons[i]);
     }
 
-    // Log optimized setpoints (runSetpoint mutates each state)
-    Logger.recordOutput("SwerveStates/SetpointsOptimized", setpointStates);
+    // Log optimized setpoints (runSetpoint mutates each state) and feedforwards
+    Logger.recordOutput("SwerveStates/SetpointsOptimized", optimizedStates);
+    Logger.recordOutput("SwerveStates/FeedforwardNewtons", feedforwardNewtons);
   }
 
   /** Runs the drive in a straight line with the specified drive output. */
@@ -291,6 +360,17 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
     for (int i = 0; i < 4; i++) {
       modules[i].runCharacterization(output);
     }
+    resetSetpoints();
+  }
+
+  /**
+   * Sets the setpoint generator to the measured module states, so the setpoints continue from what
+   * the modules are doing after they were driven some other way.
+   */
+  private void resetSetpoints() {
+    for (int i = 0; i < 4; i++) {
+      setpointGenerator.reset(i, modules[i].getVelocityMetersPerSec(), modules[i].getAngleRad());
+    }
   }
 
   /** Stops the drive. */
@@ -307,7 +387,7 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
     for (int i = 0; i < 4; i++) {
       headings[i] = getModuleTranslations()[i].getAngle();
     }
-    kinematics.resetHeadings(headings);
+    setpointGenerator.park(headings);
     stop();
   }
 
@@ -380,7 +460,7 @@ public class Drive extends SubsystemBase implements Vision.VisionConsumer {
 
   /** Resets the current odometry pose. */
   public void setPose(Pose2d pose) {
-    poseEstimator.resetPosition(rawGyroRotation, getModulePositions(), pose);
+    poseEstimator.resetPosition(Rotation2d.fromRadians(rawGyroRadians), getModulePositions(), pose);
   }
 
   /** Adds a new timestamped vision measurement. */
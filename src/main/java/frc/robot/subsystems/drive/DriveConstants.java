@@ -3,6 +3,7 @@ package frc.robot.subsystems.drive;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.util.Units;
 
 /** All Constants Measured in Meters and Radians (m/s, m/s^2, rad/s, rad/s^2) */
@@ -41,6 +42,13 @@ public final class DriveConstants {
   public static final SwerveDriveKinematics kinematics =
       new SwerveDriveKinematics(moduleTranslations);
 
+  /**
+   * The motor driving each wheel, before the gear reduction. Used to convert between force, torque
+   * current and volts for the drive feedforward and the sim. Must match "driveMotorType" in the
+   * PathPlanner settings.
+   */
+  public static final DCMotor driveMotor = DCMotor.getKrakenX60Foc(1);
+
   public record DriveConfig(
       double wheelRadius,
       double trackWidthX,
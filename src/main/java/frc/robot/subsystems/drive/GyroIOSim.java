@@ -0,0 +1,24 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.Timer;
+
+/** Sim implementation of gyro IO, which reads the heading of a {@link SwerveDriveSimulation}. */
+public class GyroIOSim implements GyroIO {
+  private final SwerveDriveSimulation simulation;
+
+  public GyroIOSim(SwerveDriveSimulation simulation) {
+    this.simulation = simulation;
+  }
+
+  @Override
+  public void updateInputs(GyroIOInputs inputs) {
+    inputs.connected = true;
+    inputs.yawPosition = simulation.getHeading();
+    inputs.yawVelocityRadPerSec = simulation.getAngularVelocityRadPerSec();
+
+    // One sample per loop, like the sim modules
+    inputs.odometryYawTimestamps = new double[] {Timer.getFPGATimestamp()};
+    inputs.odometryYawPositions = new Rotation2d[] {inputs.yawPosition};
+  }
+}
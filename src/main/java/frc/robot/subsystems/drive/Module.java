@@ -22,12 +22,19 @@ import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.Alert.AlertType;
+import frc.robot.util.LoopProfiler;
 import org.littletonrobotics.junction.Logger;
 
 public class Module {
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Drive/Modules/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Drive/Modules/ProcessInputs");
+
   private final ModuleIO io;
   private final ModuleIOInputsAutoLogged inputs = new ModuleIOInputsAutoLogged();
   private final int index;
+  private final String inputsKey;
   private final SwerveModuleConstants<
           TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
       constants;
@@ -35,7 +42,6 @@ public class Module {
   private final Alert driveDisconnectedAlert;
   private final Alert turnDisconnectedAlert;
   private final Alert turnEncoderDisconnectedAlert;
-  private SwerveModulePosition[] odometryPositions = new SwerveModulePosition[] {};
 
   public Module(
       ModuleIO io,
@@ -44,6 +50,7 @@ public class Module {
           constants) {
     this.io = io;
     this.index = index;
+    inputsKey = "Drive/Module" + Integer.toString(index);
     this.constants = constants;
     driveDisconnectedAlert =
         new Alert(
@@ -59,17 +66,12 @@ public class Module {
   }
 
   public void periodic() {
+    updateInputsTiming.start();
     io.updateInputs(inputs);
-    Logger.processInputs("Drive/Module" + Integer.toString(index), inputs);
-
-    // Calculate positions for odometry
-    int sampleCount = inputs.odometryTimestamps.length; // All signals are sampled together
-    odometryPositions = new SwerveModulePosition[sampleCount];
-    for (int i = 0; i < sampleCount; i++) {
-      double positionMeters = inputs.odometryDrivePositionsRad[i] * constants.WheelRadius;
-      Rotation2d angle = inputs.odometryTurnPositions[i];
-      odometryPositions[i] = new SwerveModulePosition(positionMeters, angle);
-    }
+    updateInputsTiming.stop();
+    processInputsTiming.start();
+    Logger.processInputs(inputsKey, inputs);
+    processInputsTiming.stop();
 
     // Update alerts
     driveDisconnectedAlert.set(!inputs.driveConnected);
@@ -79,12 +81,35 @@ public class Module {
 
   /** Runs the module with the specified setpoint state. Mutates the state to optimize it. */
   public void runSetpoint(SwerveModuleState state) {
+    runSetpoint(state, 0.0);
+  }
+
+  /**
+   * Runs the module with the specified setpoint state and a feedforward force along the state's
+   * direction. Mutates the state to optimize it.
+   *
+   * @param feedforwardNewtons The force the wheel should push the robot with, in newtons
+   */
+  public void runSetpoint(SwerveModuleState state, double feedforwardNewtons) {
+    // Project the feedforward onto the wheel with the requested angle, which both flips it when
+    // optimize() reverses the wheel and scales it like cosineScale() does
+    Rotation2d currentAngle = getAngle();
+    Rotation2d setpointAngle = state.angle;
+    feedforwardNewtons *=
+        setpointAngle.getCos() * currentAngle.getCos()
+            + setpointAngle.getSin() * currentAngle.getSin();
+
     // Optimize velocity setpoint
-    state.optimize(getAngle());
-    state.cosineScale(inputs.turnPosition);
+    state.optimize(currentAngle);
+    state.cosineScale(currentAngle);
 
     // Apply setpoints
-    io.setDriveVelocity(state.speedMetersPerSecond / constants.WheelRadius);
+    io.setDriveVelocity(
+        state.speedMetersPerSecond / constants.WheelRadius,
+        feedforwardNewtons
+            * constants.WheelRadius
+            / constants.DriveMotorGearRatio
+            / DriveConstants.driveMotor.KtNMPerAmp);
     io.setTurnPosition(state.angle);
   }
 
@@ -105,6 +130,11 @@ public class Module {
     return inputs.turnPosition;
   }
 
+  /** Returns the current turn angle of the module in radians. */
+  public double getAngleRad() {
+    return inputs.turnPosition.getRadians();
+  }
+
   /** Returns the current drive position of the module in meters. */
   public double getPositionMeters() {
     return inputs.drivePositionRad * constants.WheelRadius;
@@ -125,16 +155,21 @@ public class Module {
     return new SwerveModuleState(getVelocityMetersPerSec(), getAngle());
   }
 
-  /** Returns the module positions received this cycle. */
-  public SwerveModulePosition[] getOdometryPositions() {
-    return odometryPositions;
-  }
-
   /** Returns the timestamps of the samples received this cycle. */
   public double[] getOdometryTimestamps() {
     return inputs.odometryTimestamps;
   }
 
+  /** Returns the drive position in meters of an odometry sample received this cycle. */
+  public double getOdometryPositionMeters(int sample) {
+    return inputs.odometryDrivePositionsRad[sample] * constants.WheelRadius;
+  }
+
+  /** Returns the turn angle of an odometry sample received this cycle. */
+  public Rotation2d getOdometryAngle(int sample) {
+    return inputs.odometryTurnPositions[sample];
+  }
+
   /** Returns the module position in radians. */
   public double getWheelRadiusCharacterizationPosition() {
     return inputs.drivePositionRad;
@@ -47,8 +47,11 @@ public interface ModuleIO {
   /** Run the turn motor at the specified open loop value. */
   public default void setTurnOpenLoop(double output) {}
 
-  /** Run the drive motor at the specified velocity. */
-  public default void setDriveVelocity(double velocityRadPerSec) {}
+  /**
+   * Run the drive motor at the specified velocity, adding a feedforward in amps of motor torque
+   * current.
+   */
+  public default void setDriveVelocity(double velocityRadPerSec, double feedforwardAmps) {}
 
   /** Run the turn motor to the specified rotation. */
   public default void setTurnPosition(Rotation2d rotation) {}
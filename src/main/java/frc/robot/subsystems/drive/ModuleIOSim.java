@@ -16,20 +16,17 @@ package frc.robot.subsystems.drive;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
 import com.ctre.phoenix6.configs.TalonFXConfiguration;
 import com.ctre.phoenix6.swerve.SwerveModuleConstants;
-import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.system.plant.DCMotor;
-import edu.wpi.first.math.system.plant.LinearSystemId;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.simulation.DCMotorSim;
 
 /**
- * Physics sim implementation of module IO. The sim models are configured using a set of module
- * constants from Phoenix. Simulation is always based on voltage control.
+ * Physics sim implementation of module IO. The module is part of a {@link SwerveDriveSimulation},
+ * which is configured using a set of module constants from Phoenix and runs this module's control
+ * loops every substep. Simulation is always based on voltage control.
  */
-public class ModuleIOSim implements ModuleIO {
+public class ModuleIOSim implements ModuleIO, SwerveDriveSimulation.ModuleMotors {
   // TunerConstants doesn't support separate sim constants, so they are declared locally
   private static final double DRIVE_KP = 0.05;
   private static final double DRIVE_KD = 0.0;
@@ -39,75 +36,64 @@ public class ModuleIOSim implements ModuleIO {
   private static final double DRIVE_KV = 1.0 / Units.rotationsToRadians(1.0 / DRIVE_KV_ROT);
   private static final double TURN_KP = 8.0;
   private static final double TURN_KD = 0.0;
-  private static final DCMotor DRIVE_GEARBOX = DCMotor.getKrakenX60Foc(1);
-  private static final DCMotor TURN_GEARBOX = DCMotor.getKrakenX60Foc(1);
 
-  private final DCMotorSim driveSim;
-  private final DCMotorSim turnSim;
+  private final SwerveDriveSimulation.SimulatedModule module;
 
   private boolean driveClosedLoop = false;
   private boolean turnClosedLoop = false;
-  private PIDController driveController = new PIDController(DRIVE_KP, 0, DRIVE_KD);
-  private PIDController turnController = new PIDController(TURN_KP, 0, TURN_KD);
+  private final PIDController driveController;
+  private final PIDController turnController;
   private double driveFFVolts = 0.0;
-  private double driveAppliedVolts = 0.0;
-  private double turnAppliedVolts = 0.0;
+  private double driveOpenLoopVolts = 0.0;
+  private double turnOpenLoopVolts = 0.0;
 
   public ModuleIOSim(
       SwerveModuleConstants<TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
-          constants) {
-    // Create drive and turn sim models
-    driveSim =
-        new DCMotorSim(
-            LinearSystemId.createDCMotorSystem(
-                DRIVE_GEARBOX, constants.DriveInertia, constants.DriveMotorGearRatio),
-            DRIVE_GEARBOX);
-    turnSim =
-        new DCMotorSim(
-            LinearSystemId.createDCMotorSystem(
-                TURN_GEARBOX, constants.SteerInertia, constants.SteerMotorGearRatio),
-            TURN_GEARBOX);
+          constants,
+      SwerveDriveSimulation simulation) {
+    module = simulation.addModule(constants, this);
+    driveController = new PIDController(DRIVE_KP, 0, DRIVE_KD, simulation.getSubstepSeconds());
+    turnController = new PIDController(TURN_KP, 0, TURN_KD, simulation.getSubstepSeconds());
 
     // Enable wrapping for turn PID
     turnController.enableContinuousInput(-Math.PI, Math.PI);
   }
 
   @Override
-  public void updateInputs(ModuleIOInputs inputs) {
-    // Run closed-loop control
-    if (driveClosedLoop) {
-      driveAppliedVolts =
-          driveFFVolts + driveController.calculate(driveSim.getAngularVelocityRadPerSec());
-    } else {
+  public double getDriveVolts(double wheelVelocityRadPerSec) {
+    if (!driveClosedLoop) {
       driveController.reset();
+      return driveOpenLoopVolts;
     }
-    if (turnClosedLoop) {
-      turnAppliedVolts = turnController.calculate(turnSim.getAngularPositionRad());
-    } else {
+    return driveFFVolts + driveController.calculate(wheelVelocityRadPerSec);
+  }
+
+  @Override
+  public double getTurnVolts(double turnPositionRad) {
+    if (!turnClosedLoop) {
       turnController.reset();
+      return turnOpenLoopVolts;
     }
+    return turnController.calculate(turnPositionRad);
+  }
 
-    // Update simulation state
-    driveSim.setInputVoltage(MathUtil.clamp(driveAppliedVolts, -12.0, 12.0));
-    turnSim.setInputVoltage(MathUtil.clamp(turnAppliedVolts, -12.0, 12.0));
-    driveSim.update(0.02);
-    turnSim.update(0.02);
-
+  @Override
+  public void updateInputs(ModuleIOInputs inputs) {
     // Update drive inputs
     inputs.driveConnected = true;
-    inputs.drivePositionRad = driveSim.getAngularPositionRad();
-    inputs.driveVelocityRadPerSec = driveSim.getAngularVelocityRadPerSec();
-    inputs.driveAppliedVolts = driveAppliedVolts;
-    inputs.driveCurrentAmps = Math.abs(driveSim.getCurrentDrawAmps());
+    inputs.drivePositionRad = module.getWheelPositionRad();
+    inputs.driveVelocityRadPerSec = module.getWheelVelocityRadPerSec();
+    inputs.driveAppliedVolts = module.getDriveAppliedVolts();
+    inputs.driveCurrentAmps = module.getDriveCurrentAmps();
 
     // Update turn inputs
     inputs.turnConnected = true;
     inputs.turnEncoderConnected = true;
-    inputs.turnAbsolutePosition = new Rotation2d(turnSim.getAngularPositionRad());
-    inputs.turnPosition = new Rotation2d(turnSim.getAngularPositionRad());
-    inputs.turnVelocityRadPerSec = turnSim.getAngularVelocityRadPerSec();
-    inputs.turnAppliedVolts = turnAppliedVolts;
-    inputs.turnCurrentAmps = Math.abs(turnSim.getCurrentDrawAmps());
+    inputs.turnAbsolutePosition = new Rotation2d(module.getTurnPositionRad());
+    inputs.turnPosition = inputs.turnAbsolutePosition;
+    inputs.turnVelocityRadPerSec = module.getTurnVelocityRadPerSec();
+    inputs.turnAppliedVolts = module.getTurnAppliedVolts();
+    inputs.turnCurrentAmps = module.getTurnCurrentAmps();
 
     // Update odometry inputs (50Hz because high-frequency odometry in sim doesn't matter)
     inputs.odometryTimestamps = new double[] {Timer.getFPGATimestamp()};
@@ -118,19 +104,22 @@ public class ModuleIOSim implements ModuleIO {
   @Override
   public void setDriveOpenLoop(double output) {
     driveClosedLoop = false;
-    driveAppliedVolts = output;
+    driveOpenLoopVolts = output;
   }
 
   @Override
   public void setTurnOpenLoop(double output) {
     turnClosedLoop = false;
-    turnAppliedVolts = output;
+    turnOpenLoopVolts = output;
   }
 
   @Override
-  public void setDriveVelocity(double velocityRadPerSec) {
+  public void setDriveVelocity(double velocityRadPerSec, double feedforwardAmps) {
     driveClosedLoop = true;
-    driveFFVolts = DRIVE_KS * Math.signum(velocityRadPerSec) + DRIVE_KV * velocityRadPerSec;
+    driveFFVolts =
+        DRIVE_KS * Math.signum(velocityRadPerSec)
+            + DRIVE_KV * velocityRadPerSec
+            + DriveConstants.driveMotor.rOhms * feedforwardAmps; // Torque current to volts
     driveController.setSetpoint(velocityRadPerSec);
   }
 
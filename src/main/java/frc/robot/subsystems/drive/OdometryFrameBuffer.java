@@ -0,0 +1,116 @@
+package frc.robot.subsystems.drive;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-producer/single-consumer ring buffer of odometry frames, used to hand high-frequency
+ * samples from {@link PhoenixOdometryThread} to the main loop.
+ *
+ * <p>Each frame holds a timestamp and one value for every registered signal, stored as a structure
+ * of primitive arrays. The producer writes every column of a slot and then publishes the whole
+ * frame by advancing the write sequence, so the consumer never sees a partially written frame and
+ * every signal always has the same number of samples.
+ *
+ * <p>The consumer calls {@link #read()} once per loop to latch all published frames into a second
+ * set of preallocated arrays, which the IO layers then read by signal index. Neither side takes a
+ * lock, boxes a value, or allocates. If the consumer falls a full buffer behind, new frames are
+ * dropped and counted instead of blocking the odometry thread.
+ */
+public class OdometryFrameBuffer {
+  private final int mask;
+  private final double[] timestamps;
+  private final double[][] values; // [signal][slot]
+  private final AtomicLong writeSequence = new AtomicLong();
+  private final AtomicLong readSequence = new AtomicLong();
+  private final AtomicLong droppedFrames = new AtomicLong();
+
+  // Frames latched by the consumer this cycle
+  private final double[] frameTimestamps;
+  private final double[][] frameValues; // [signal][frame]
+  private int frameCount = 0;
+
+  /**
+   * Creates a new frame buffer.
+   *
+   * @param capacity Number of frames that can be buffered, rounded up to a power of two
+   * @param signalCount Number of values in each frame, not including the timestamp
+   */
+  public OdometryFrameBuffer(int capacity, int signalCount) {
+    int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+    mask = size - 1;
+    timestamps = new double[size];
+    values = new double[signalCount][size];
+    frameTimestamps = new double[size];
+    frameValues = new double[signalCount][size];
+  }
+
+  /** Returns the number of frames this buffer can hold. */
+  public int capacity() {
+    return timestamps.length;
+  }
+
+  /** Returns the number of values in each frame, not including the timestamp. */
+  public int signalCount() {
+    return values.length;
+  }
+
+  /**
+   * Adds a frame. Must only be called from the producer thread.
+   *
+   * @param timestamp Timestamp of the frame in seconds
+   * @param sample One value per signal, in registration order
+   * @return False if the buffer was full and the frame was dropped
+   */
+  public boolean publish(double timestamp, double[] sample) {
+    long write = writeSequence.get();
+    if (write - readSequence.get() >= timestamps.length) {
+      droppedFrames.incrementAndGet();
+      return false;
+    }
+    int slot = (int) (write & mask);
+    timestamps[slot] = timestamp;
+    for (int signal = 0; signal < values.length; signal++) {
+      values[signal][slot] = sample[signal];
+    }
+    writeSequence.lazySet(write + 1); // Publish the frame after every column has been written
+    return true;
+  }
+
+  /**
+   * Latches every published frame, oldest first, so it can be read through {@link
+   * #getFrameCount()}, {@link #getTimestamp(int)}, and {@link #getValue(int, int)}. Must only be
+   * called from the consumer thread.
+   */
+  public void read() {
+    long read = readSequence.get();
+    frameCount = (int) (writeSequence.get() - read);
+    for (int frame = 0; frame < frameCount; frame++) {
+      int slot = (int) ((read + frame) & mask);
+      frameTimestamps[frame] = timestamps[slot];
+      for (int signal = 0; signal < values.length; signal++) {
+        frameValues[signal][frame] = values[signal][slot];
+      }
+    }
+    readSequence.lazySet(read + frameCount); // Release the slots back to the producer
+  }
+
+  /** Returns the number of frames latched by the last call to {@link #read()}. */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+  /** Returns the timestamp of a latched frame in seconds. */
+  public double getTimestamp(int frame) {
+    return frameTimestamps[frame];
+  }
+
+  /** Returns the value of a signal in a latched frame. */
+  public double getValue(int signal, int frame) {
+    return frameValues[signal][frame];
+  }
+
+  /** Returns the total number of frames dropped because the buffer was full. */
+  public long getDroppedFrames() {
+    return droppedFrames.get();
+  }
+}
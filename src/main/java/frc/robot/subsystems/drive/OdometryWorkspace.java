@@ -0,0 +1,65 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Preallocated storage for integrating odometry samples in {@link Drive#periodic()} without
+ * allocating. Each sample is read from the modules' inputs into reused primitive arrays of
+ * distances and angle unit vectors, which are what the pose estimator uses.
+ *
+ * <p>When the gyro is disconnected, the heading change is computed from the module deltas with the
+ * same least-squares forward kinematics as {@code SwerveDriveKinematics.toTwist2d}, using a
+ * precomputed row of the pseudo-inverse instead of building matrices for every sample.
+ */
+class OdometryWorkspace {
+  /** The drive positions of the sample loaded by the last {@link #loadSample}, FL, FR, BL, BR. */
+  final double[] distancesMeters = new double[4];
+
+  /** The cosines of the module angles of the loaded sample. */
+  final double[] angleCos = new double[] {1, 1, 1, 1};
+
+  /** The sines of the module angles of the loaded sample. */
+  final double[] angleSin = new double[4];
+
+  private final double[] dthetaCoefficients = new double[8];
+
+  OdometryWorkspace(Translation2d[] moduleTranslations) {
+    // Same inverse kinematics matrix as SwerveDriveKinematics, [vx, vy, omega] -> module vectors
+    SimpleMatrix inverseKinematics = new SimpleMatrix(8, 3);
+    for (int i = 0; i < 4; i++) {
+      inverseKinematics.setRow(2 * i, 0, 1, 0, -moduleTranslations[i].getY());
+      inverseKinematics.setRow(2 * i + 1, 0, 0, 1, moduleTranslations[i].getX());
+    }
+    SimpleMatrix forwardKinematics = inverseKinematics.pseudoInverse();
+    for (int i = 0; i < 8; i++) {
+      dthetaCoefficients[i] = forwardKinematics.get(2, i);
+    }
+  }
+
+  /**
+   * Loads one odometry sample from every module into {@link #distancesMeters}, {@link #angleCos}
+   * and {@link #angleSin}.
+   *
+   * @return The heading change since the previous sample in radians, computed from kinematics
+   */
+  double loadSample(Module[] modules, int sampleIndex) {
+    double dtheta = 0.0;
+    for (int i = 0; i < 4; i++) {
+      double distance = modules[i].getOdometryPositionMeters(sampleIndex);
+      Rotation2d angle = modules[i].getOdometryAngle(sampleIndex);
+      double cos = angle.getCos();
+      double sin = angle.getSin();
+      double deltaMeters = distance - distancesMeters[i];
+      dtheta +=
+          dthetaCoefficients[2 * i] * deltaMeters * cos
+              + dthetaCoefficients[2 * i + 1] * deltaMeters * sin;
+
+      distancesMeters[i] = distance;
+      angleCos[i] = cos;
+      angleSin[i] = sin;
+    }
+    return dtheta;
+  }
+}
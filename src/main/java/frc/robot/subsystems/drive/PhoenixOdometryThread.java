@@ -21,14 +21,12 @@ import edu.wpi.first.wpilibj.RobotController;
 import frc.robot.generated.TunerConstants;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.DoubleSupplier;
 
 /**
- * Provides an interface for asynchronously reading high-frequency measurements to a set of queues.
+ * Provides an interface for asynchronously reading high-frequency measurements into a buffer of
+ * odometry frames. Every frame holds the timestamp and one sample of every registered signal, so
+ * all signals are always sampled together.
  *
  * <p>This version is intended for Phoenix 6 devices on both the RIO and CANivore buses. When using
  * a CANivore, the thread uses the "waitForAll" blocking method to enable more consistent sampling.
@@ -36,13 +34,18 @@ import java.util.function.DoubleSupplier;
  * time synchronization.
  */
 public class PhoenixOdometryThread extends Thread {
-  private final Lock signalsLock =
-      new ReentrantLock(); // Prevents conflicts when registering signals
+  // Enough for ~250 ms of samples at 250 Hz, so a slow main loop doesn't drop data
+  static final int BUFFER_CAPACITY = 64;
+
   private BaseStatusSignal[] phoenixSignals = new BaseStatusSignal[0];
+  private final List<Integer> phoenixSignalIndices = new ArrayList<>();
   private final List<DoubleSupplier> genericSignals = new ArrayList<>();
-  private final List<Queue<Double>> phoenixQueues = new ArrayList<>();
-  private final List<Queue<Double>> genericQueues = new ArrayList<>();
-  private final List<Queue<Double>> timestampQueues = new ArrayList<>();
+  private final List<Integer> genericSignalIndices = new ArrayList<>();
+  private int signalCount = 0;
+
+  // Signals can only be registered before the thread starts, since the frame layout is fixed then
+  private OdometryFrameBuffer frames = new OdometryFrameBuffer(BUFFER_CAPACITY, 0);
+  private boolean started = false;
 
   private static boolean isCANFD =
       new CANBus(TunerConstants.DrivetrainConstants.CANBusName).isNetworkFD();
@@ -62,61 +65,69 @@ public class PhoenixOdometryThread extends Thread {
 
   @Override
   public void start() {
-    if (timestampQueues.size() > 0) {
+    started = true;
+    if (signalCount > 0) {
+      frames = new OdometryFrameBuffer(BUFFER_CAPACITY, signalCount);
       super.start();
     }
   }
 
-  /** Registers a Phoenix signal to be read from the thread. */
-  public Queue<Double> registerSignal(StatusSignal<Angle> signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    signalsLock.lock();
-    Drive.odometryLock.lock();
-    try {
-      BaseStatusSignal[] newSignals = new BaseStatusSignal[phoenixSignals.length + 1];
-      System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
-      newSignals[phoenixSignals.length] = signal;
-      phoenixSignals = newSignals;
-      phoenixQueues.add(queue);
-    } finally {
-      signalsLock.unlock();
-      Drive.odometryLock.unlock();
-    }
-    return queue;
+  /**
+   * Registers a Phoenix signal to be read from the thread.
+   *
+   * @return The index of the signal in each odometry frame
+   */
+  public int registerSignal(StatusSignal<Angle> signal) {
+    checkNotStarted();
+    BaseStatusSignal[] newSignals = new BaseStatusSignal[phoenixSignals.length + 1];
+    System.arraycopy(phoenixSignals, 0, newSignals, 0, phoenixSignals.length);
+    newSignals[phoenixSignals.length] = signal;
+    phoenixSignals = newSignals;
+    phoenixSignalIndices.add(signalCount);
+    return signalCount++;
   }
 
-  /** Registers a generic signal to be read from the thread. */
-  public Queue<Double> registerSignal(DoubleSupplier signal) {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    signalsLock.lock();
-    Drive.odometryLock.lock();
-    try {
-      genericSignals.add(signal);
-      genericQueues.add(queue);
-    } finally {
-      signalsLock.unlock();
-      Drive.odometryLock.unlock();
-    }
-    return queue;
+  /**
+   * Registers a generic signal to be read from the thread.
+   *
+   * @return The index of the signal in each odometry frame
+   */
+  public int registerSignal(DoubleSupplier signal) {
+    checkNotStarted();
+    genericSignals.add(signal);
+    genericSignalIndices.add(signalCount);
+    return signalCount++;
   }
 
-  /** Returns a new queue that returns timestamp values for each sample. */
-  public Queue<Double> makeTimestampQueue() {
-    Queue<Double> queue = new ArrayBlockingQueue<>(20);
-    Drive.odometryLock.lock();
-    try {
-      timestampQueues.add(queue);
-    } finally {
-      Drive.odometryLock.unlock();
+  /**
+   * Latches every frame published since the last call. Must be called once per loop by the
+   * consumer, before any IO layer reads from {@link #getFrames()}.
+   */
+  public void readFrames() {
+    frames.read();
+  }
+
+  /** Returns the frames latched by the last call to {@link #readFrames()}. */
+  public OdometryFrameBuffer getFrames() {
+    return frames;
+  }
+
+  private void checkNotStarted() {
+    if (started) {
+      throw new IllegalStateException(
+          "Odometry signals must be registered before the odometry thread is started");
     }
-    return queue;
   }
 
   @Override
   public void run() {
+    int[] phoenixIndices = phoenixSignalIndices.stream().mapToInt(Integer::intValue).toArray();
+    int[] genericIndices = genericSignalIndices.stream().mapToInt(Integer::intValue).toArray();
+    DoubleSupplier[] generic = genericSignals.toArray(new DoubleSupplier[0]);
+    double[] sample = new double[signalCount];
+
     while (true) {
       // Wait for updates from all signals
-      signalsLock.lock();
       try {
         if (isCANFD && phoenixSignals.length > 0) {
           BaseStatusSignal.waitForAll(2.0 / Drive.ODOMETRY_FREQUENCY, phoenixSignals);
@@ -129,38 +140,28 @@ public class PhoenixOdometryThread extends Thread {
         }
       } catch (InterruptedException e) {
         e.printStackTrace();
-      } finally {
-        signalsLock.unlock();
       }
 
-      // Save new data to queues
-      Drive.odometryLock.lock();
-      try {
-        // Sample timestamp is current FPGA time minus average CAN latency
-        //     Default timestamps from Phoenix are NOT compatible with
-        //     FPGA timestamps, this solution is imperfect but close
-        double timestamp = RobotController.getFPGATime() / 1e6;
-        double totalLatency = 0.0;
-        for (BaseStatusSignal signal : phoenixSignals) {
-          totalLatency += signal.getTimestamp().getLatency();
-        }
-        if (phoenixSignals.length > 0) {
-          timestamp -= totalLatency / phoenixSignals.length;
-        }
+      // Sample timestamp is current FPGA time minus average CAN latency
+      //     Default timestamps from Phoenix are NOT compatible with
+      //     FPGA timestamps, this solution is imperfect but close
+      double timestamp = RobotController.getFPGATime() / 1e6;
+      double totalLatency = 0.0;
+      for (BaseStatusSignal signal : phoenixSignals) {
+        totalLatency += signal.getTimestamp().getLatency();
+      }
+      if (phoenixSignals.length > 0) {
+        timestamp -= totalLatency / phoenixSignals.length;
+      }
 
-        // Add new samples to queues
-        for (int i = 0; i < phoenixSignals.length; i++) {
-          phoenixQueues.get(i).offer(phoenixSignals[i].getValueAsDouble());
-        }
-        for (int i = 0; i < genericSignals.size(); i++) {
-          genericQueues.get(i).offer(genericSignals.get(i).getAsDouble());
-        }
-        for (int i = 0; i < timestampQueues.size(); i++) {
-          timestampQueues.get(i).offer(timestamp);
-        }
-      } finally {
-        Drive.odometryLock.unlock();
+      // Publish all signals together as one frame
+      for (int i = 0; i < phoenixSignals.length; i++) {
+        sample[phoenixIndices[i]] = phoenixSignals[i].getValueAsDouble();
+      }
+      for (int i = 0; i < generic.length; i++) {
+        sample[genericIndices[i]] = generic[i].getAsDouble();
       }
+      frames.publish(timestamp, sample);
     }
   }
 }
@@ -0,0 +1,573 @@
+package frc.robot.subsystems.drive;
+
+import com.ctre.phoenix6.configs.CANcoderConfiguration;
+import com.ctre.phoenix6.configs.TalonFXConfiguration;
+import com.ctre.phoenix6.swerve.SwerveModuleConstants;
+import com.pathplanner.lib.config.RobotConfig;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import frc.robot.FieldConstants;
+import frc.robot.SimBattery;
+import frc.robot.SimVariation;
+import java.util.ArrayList;
+import java.util.List;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Rigid-body physics sim of the drivetrain, shared by {@link ModuleIOSim} and {@link GyroIOSim}.
+ *
+ * <p>The chassis has the robot's mass and moment of inertia, and is pushed by the force each wheel
+ * puts on the carpet. While a wheel grips, it rolls with the carpet and the drive motor's torque
+ * becomes force. Each tire can only push as hard as friction allows, so when the motor or a
+ * sideways slide asks for more, the wheel skids and only the friction force acts until the wheel
+ * speed matches the carpet again. The bumpers collide with the field walls and both reefs, from
+ * {@link FieldConstants}. The field is treated as a rectangle. The mass, moment of inertia and
+ * wheel friction are read from the PathPlanner robot config.
+ *
+ * <p>Each loop is split into substeps, 1 ms by default, and the module motor controllers run every
+ * substep like the TalonFX's 1 kHz loops. {@link #update()} should be called once per loop.
+ */
+public class SwerveDriveSimulation {
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  public static final double DEFAULT_SUBSTEP_SECONDS = 0.001;
+
+  private static final double GRAVITY_METERS_PER_SEC_SQUARED = 9.81;
+
+  private static final DCMotor DRIVE_GEARBOX = DriveConstants.driveMotor;
+  private static final DCMotor TURN_GEARBOX = DCMotor.getKrakenX60Foc(1);
+
+  // The four wheels each try to stop their sideways slide in one substep. When the robot spins,
+  // their pushes add up to more than is needed, so each only removes part of it.
+  private static final double LATERAL_CORRECTION = 0.5;
+
+  private static final double HALF_LENGTH_METERS = DriveConstants.driveConfig.bumperWidthX() / 2;
+  private static final double HALF_WIDTH_METERS = DriveConstants.driveConfig.bumperWidthY() / 2;
+
+  // Corners of each reef, in clockwise order
+  private static final int REEF_SIDES = 6;
+  private static final double[][] reefXs = new double[2][REEF_SIDES];
+  private static final double[][] reefYs = new double[2][REEF_SIDES];
+  private static final double[] reefCenterXs = new double[2];
+  private static final double[] reefCenterYs = new double[2];
+
+  static {
+    double apothem =
+        FieldConstants.Reef.centerFaces[0]
+            .getTranslation()
+            .getDistance(FieldConstants.Reef.centerOfReef);
+    double halfSide = apothem * Math.tan(Math.PI / REEF_SIDES);
+    for (int reef = 0; reef < 2; reef++) {
+      for (int side = 0; side < REEF_SIDES; side++) {
+        // Faces are in clockwise order and face outward, so the corner counterclockwise of each
+        // face is the one clockwise of the face before it
+        var face = FieldConstants.Reef.centerFaces[reef * REEF_SIDES + side];
+        double normal = face.getRotation().getRadians();
+        reefXs[reef][side] = face.getX() - Math.sin(normal) * halfSide;
+        reefYs[reef][side] = face.getY() + Math.cos(normal) * halfSide;
+        reefCenterXs[reef] += reefXs[reef][side] / REEF_SIDES;
+        reefCenterYs[reef] += reefYs[reef][side] / REEF_SIDES;
+      }
+    }
+  }
+
+  /** The motor controllers of one module, which are run every substep. */
+  interface ModuleMotors {
+    /** Returns the drive motor voltage, given the wheel's velocity. */
+    double getDriveVolts(double wheelVelocityRadPerSec);
+
+    /** Returns the turn motor voltage, given the module's angle relative to the robot. */
+    double getTurnVolts(double turnPositionRad);
+  }
+
+  /** The physics state of one module. Angles and velocities are of the wheel, after gearing. */
+  static final class SimulatedModule {
+    private final ModuleMotors motors;
+    private final double locationX;
+    private final double locationY;
+    private final double wheelRadius;
+    private final double driveGearing;
+    private final double turnGearing;
+    private final double driveInertia;
+    private final double turnInertia;
+    private final double slipCurrent;
+    private final int batterySource;
+
+    private double wheelPositionRad = 0.0;
+    private double wheelVelocityRadPerSec = 0.0;
+    private boolean skidding = false;
+    private double slipDirection = 0.0;
+    private double turnPositionRad = 0.0;
+    private double turnVelocityRadPerSec = 0.0;
+
+    private double driveAppliedVolts = 0.0;
+    private double turnAppliedVolts = 0.0;
+    private double driveCurrentAmps = 0.0;
+    private double turnCurrentAmps = 0.0;
+    private double batteryCurrentSum = 0.0;
+
+    private SimulatedModule(
+        SwerveModuleConstants<TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
+            constants,
+        ModuleMotors motors,
+        int index) {
+      this.motors = motors;
+      locationX = constants.LocationX;
+      locationY = constants.LocationY;
+      wheelRadius = constants.WheelRadius;
+      driveGearing = constants.DriveMotorGearRatio;
+      turnGearing = constants.SteerMotorGearRatio;
+      driveInertia = constants.DriveInertia;
+      turnInertia = constants.SteerInertia;
+      slipCurrent = constants.SlipCurrent;
+      batterySource = SimBattery.addSource("Drive/Module" + index);
+    }
+
+    double getWheelPositionRad() {
+      return wheelPositionRad;
+    }
+
+    double getWheelVelocityRadPerSec() {
+      return wheelVelocityRadPerSec;
+    }
+
+    double getTurnPositionRad() {
+      return turnPositionRad;
+    }
+
+    double getTurnVelocityRadPerSec() {
+      return turnVelocityRadPerSec;
+    }
+
+    double getDriveAppliedVolts() {
+      return driveAppliedVolts;
+    }
+
+    double getTurnAppliedVolts() {
+      return turnAppliedVolts;
+    }
+
+    double getDriveCurrentAmps() {
+      return Math.abs(driveCurrentAmps);
+    }
+
+    double getTurnCurrentAmps() {
+      return Math.abs(turnCurrentAmps);
+    }
+  }
+
+  private final List<SimulatedModule> modules = new ArrayList<>();
+  private final int substeps;
+  private final double substepSeconds;
+
+  // Chassis state, in field coordinates
+  private double x;
+  private double y;
+  private double heading;
+  private double vx = 0.0;
+  private double vy = 0.0;
+  private double omega = 0.0;
+
+  // From the PathPlanner robot config, so paths and the sim use the same robot
+  private final double massKg;
+  private final double moiKgMetersSquared;
+  private final double wheelCof;
+
+  // Bumper corners, in field coordinates
+  private final double[] cornerXs = new double[4];
+  private final double[] cornerYs = new double[4];
+
+  public SwerveDriveSimulation(Pose2d initialPose) {
+    this(initialPose, DEFAULT_SUBSTEP_SECONDS);
+  }
+
+  /**
+   * Creates a new SwerveDriveSimulation.
+   *
+   * @param initialPose Where the robot starts.
+   * @param substepSeconds How often the physics and the motor controllers are updated. Rounded so a
+   *     whole number of substeps fits in each loop.
+   */
+  public SwerveDriveSimulation(Pose2d initialPose, double substepSeconds) {
+    RobotConfig config;
+    try {
+      config = RobotConfig.fromGUISettings();
+    } catch (Exception e) {
+      throw new IllegalStateException("Failed to load the PathPlanner robot config", e);
+    }
+    massKg = config.massKG;
+    moiKgMetersSquared = config.MOI;
+    wheelCof = config.moduleConfig.wheelCOF;
+
+    substeps = Math.max(1, (int) Math.round(LOOP_PERIOD_SECONDS / substepSeconds));
+    this.substepSeconds = LOOP_PERIOD_SECONDS / substeps;
+    setPose(initialPose);
+  }
+
+  /** Adds a module, which is run by the given motor controllers. */
+  SimulatedModule addModule(
+      SwerveModuleConstants<TalonFXConfiguration, TalonFXConfiguration, CANcoderConfiguration>
+          constants,
+      ModuleMotors motors) {
+    var module = new SimulatedModule(constants, motors, modules.size());
+    modules.add(module);
+    return module;
+  }
+
+  double getSubstepSeconds() {
+    return substepSeconds;
+  }
+
+  /** Returns the robot's actual pose, which odometry only estimates. */
+  public Pose2d getPose() {
+    return new Pose2d(x, y, new Rotation2d(heading));
+  }
+
+  /** Moves the robot to a pose and stops it. */
+  public void setPose(Pose2d pose) {
+    x = pose.getX();
+    y = pose.getY();
+    heading = pose.getRotation().getRadians();
+    vx = 0.0;
+    vy = 0.0;
+    omega = 0.0;
+    for (var module : modules) {
+      module.wheelVelocityRadPerSec = 0.0;
+      module.skidding = false;
+    }
+  }
+
+  public Rotation2d getHeading() {
+    return new Rotation2d(heading);
+  }
+
+  public double getAngularVelocityRadPerSec() {
+    return omega;
+  }
+
+  /** Runs the sim for one loop. */
+  public void update() {
+    for (var module : modules) {
+      module.batteryCurrentSum = 0.0;
+    }
+    for (int i = 0; i < substeps; i++) {
+      step(substepSeconds);
+    }
+    for (var module : modules) {
+      SimBattery.setCurrent(module.batterySource, module.batteryCurrentSum / substeps);
+    }
+
+    Logger.recordOutput("DriveSimulation/Pose", getPose());
+  }
+
+  private void step(double dt) {
+    double batteryVolts = SimBattery.getAvailableVoltage();
+    double maxFriction =
+        wheelCof
+            * SimVariation.driveTraction
+            * massKg
+            * GRAVITY_METERS_PER_SEC_SQUARED
+            / modules.size();
+    double lateralMass = massKg / modules.size() * LATERAL_CORRECTION;
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+
+    double forceX = 0.0;
+    double forceY = 0.0;
+    double torque = 0.0;
+    for (var module : modules) {
+      // The turn motor only turns the wheel, so it isn't coupled to the chassis
+      module.turnAppliedVolts =
+          MathUtil.clamp(
+              module.motors.getTurnVolts(module.turnPositionRad), -batteryVolts, batteryVolts);
+      module.turnCurrentAmps =
+          TURN_GEARBOX.getCurrent(
+              module.turnVelocityRadPerSec * module.turnGearing, module.turnAppliedVolts);
+      module.turnVelocityRadPerSec =
+          stepMotor(
+              TURN_GEARBOX,
+              module.turnGearing,
+              module.turnInertia,
+              module.turnAppliedVolts,
+              module.turnVelocityRadPerSec,
+              Double.POSITIVE_INFINITY,
+              0.0,
+              dt);
+      module.turnPositionRad += module.turnVelocityRadPerSec * dt;
+
+      // Velocity of the module over the carpet, along and across the wheel
+      double offsetX = cos * module.locationX - sin * module.locationY;
+      double offsetY = sin * module.locationX + cos * module.locationY;
+      double moduleVx = vx - omega * offsetY;
+      double moduleVy = vy + omega * offsetX;
+      double wheelCos = Math.cos(heading + module.turnPositionRad);
+      double wheelSin = Math.sin(heading + module.turnPositionRad);
+      double longVelocity = moduleVx * wheelCos + moduleVy * wheelSin;
+      double latVelocity = -moduleVx * wheelSin + moduleVy * wheelCos;
+
+      module.driveAppliedVolts =
+          MathUtil.clamp(
+              module.motors.getDriveVolts(module.wheelVelocityRadPerSec),
+              -batteryVolts,
+              batteryVolts);
+      module.driveCurrentAmps =
+          MathUtil.clamp(
+              DRIVE_GEARBOX.getCurrent(
+                  module.wheelVelocityRadPerSec * module.driveGearing, module.driveAppliedVolts),
+              -module.slipCurrent,
+              module.slipCurrent);
+      module.batteryCurrentSum +=
+          Math.abs(module.driveCurrentAmps) + Math.abs(module.turnCurrentAmps);
+
+      double longForce =
+          module.driveGearing
+              * DRIVE_GEARBOX.getTorque(module.driveCurrentAmps)
+              / module.wheelRadius;
+      if (!module.skidding && Math.abs(longForce) > maxFriction) {
+        // A wheel that breaks loose slips the way the motor pushes it
+        module.skidding = true;
+        module.slipDirection = Math.signum(longForce);
+      }
+      if (module.skidding) {
+        // Only friction acts, against the slip, and the rest of the torque spins the wheel
+        double slip = module.wheelVelocityRadPerSec * module.wheelRadius - longVelocity;
+        if (slip != 0) {
+          module.slipDirection = Math.signum(slip);
+        }
+        longForce = module.slipDirection * maxFriction;
+        module.wheelVelocityRadPerSec =
+            stepMotor(
+                DRIVE_GEARBOX,
+                module.driveGearing,
+                module.driveInertia,
+                module.driveAppliedVolts,
+                module.wheelVelocityRadPerSec,
+                module.slipCurrent,
+                -longForce * module.wheelRadius,
+                dt);
+      }
+
+      // The tire resists sliding sideways, and its total push is limited by friction
+      double latForce = -latVelocity * lateralMass / dt;
+      double totalForce = Math.hypot(longForce, latForce);
+      if (totalForce > maxFriction) {
+        longForce *= maxFriction / totalForce;
+        latForce *= maxFriction / totalForce;
+      }
+
+      double moduleForceX = longForce * wheelCos - latForce * wheelSin;
+      double moduleForceY = longForce * wheelSin + latForce * wheelCos;
+      forceX += moduleForceX;
+      forceY += moduleForceY;
+      torque += offsetX * moduleForceY - offsetY * moduleForceX;
+    }
+
+    vx += forceX / massKg * dt;
+    vy += forceY / massKg * dt;
+    omega += torque / moiKgMetersSquared * dt;
+    x += vx * dt;
+    y += vy * dt;
+    heading += omega * dt;
+
+    resolveCollisions();
+
+    // Gripping wheels roll with the carpet. Skidding wheels grip again once their speed crosses it.
+    cos = Math.cos(heading);
+    sin = Math.sin(heading);
+    for (var module : modules) {
+      double offsetX = cos * module.locationX - sin * module.locationY;
+      double offsetY = sin * module.locationX + cos * module.locationY;
+      double longVelocity =
+          (vx - omega * offsetY) * Math.cos(heading + module.turnPositionRad)
+              + (vy + omega * offsetX) * Math.sin(heading + module.turnPositionRad);
+      if (module.skidding) {
+        double slip = module.wheelVelocityRadPerSec * module.wheelRadius - longVelocity;
+        module.skidding = slip * module.slipDirection > 0;
+      }
+      if (!module.skidding) {
+        module.wheelVelocityRadPerSec = longVelocity / module.wheelRadius;
+      }
+      module.wheelPositionRad += module.wheelVelocityRadPerSec * dt;
+    }
+  }
+
+  /**
+   * Steps the output velocity of a geared motor with a torque on its output. Back EMF is applied
+   * implicitly, so high gearing stays stable at large substeps.
+   */
+  private static double stepMotor(
+      DCMotor motor,
+      double gearing,
+      double inertia,
+      double volts,
+      double velocity,
+      double currentLimit,
+      double externalTorque,
+      double dt) {
+    double current = motor.getCurrent(velocity * gearing, volts);
+    if (Math.abs(current) > currentLimit) {
+      double limitedTorque = gearing * motor.getTorque(Math.copySign(currentLimit, current));
+      return velocity + (limitedTorque + externalTorque) / inertia * dt;
+    }
+    double appliedTorque = gearing * motor.KtNMPerAmp * volts / motor.rOhms + externalTorque;
+    double damping =
+        gearing * gearing * motor.KtNMPerAmp / (motor.KvRadPerSecPerVolt * motor.rOhms);
+    return (velocity + appliedTorque / inertia * dt) / (1 + damping / inertia * dt);
+  }
+
+  private void updateCorners() {
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+    for (int i = 0; i < 4; i++) {
+      double cornerX = (i == 0 || i == 3) ? HALF_LENGTH_METERS : -HALF_LENGTH_METERS;
+      double cornerY = (i < 2) ? HALF_WIDTH_METERS : -HALF_WIDTH_METERS;
+      cornerXs[i] = x + cos * cornerX - sin * cornerY;
+      cornerYs[i] = y + sin * cornerX + cos * cornerY;
+    }
+  }
+
+  private void resolveCollisions() {
+    updateCorners();
+
+    // Each wall is where normal * point = offset, with the field on the side the normal points to
+    resolveWall(1, 0, 0);
+    resolveWall(-1, 0, -FieldConstants.fieldLength);
+    resolveWall(0, 1, 0);
+    resolveWall(0, -1, -FieldConstants.fieldWidth);
+
+    for (int reef = 0; reef < 2; reef++) {
+      resolveReef(reef);
+    }
+  }
+
+  private void resolveWall(double normalX, double normalY, double offset) {
+    int deepest = 0;
+    for (int i = 1; i < 4; i++) {
+      if (normalX * cornerXs[i] + normalY * cornerYs[i]
+          < normalX * cornerXs[deepest] + normalY * cornerYs[deepest]) {
+        deepest = i;
+      }
+    }
+    double depth = offset - (normalX * cornerXs[deepest] + normalY * cornerYs[deepest]);
+    if (depth > 0) {
+      resolveContact(normalX, normalY, depth, cornerXs[deepest], cornerYs[deepest]);
+    }
+  }
+
+  /** Separates the bumpers from a reef with the separating axis test. */
+  private void resolveReef(int reef) {
+    double[] xs = reefXs[reef];
+    double[] ys = reefYs[reef];
+    double cos = Math.cos(heading);
+    double sin = Math.sin(heading);
+
+    double minOverlap = Double.POSITIVE_INFINITY;
+    double normalX = 0.0;
+    double normalY = 0.0;
+    boolean bumperAxis = false;
+    for (int i = 0; i < 2 + REEF_SIDES; i++) {
+      double axisX;
+      double axisY;
+      if (i == 0) {
+        axisX = cos;
+        axisY = sin;
+      } else if (i == 1) {
+        axisX = -sin;
+        axisY = cos;
+      } else {
+        int side = i - 2;
+        int next = (side + 1) % REEF_SIDES;
+        double length = Math.hypot(xs[next] - xs[side], ys[next] - ys[side]);
+        axisX = -(ys[next] - ys[side]) / length;
+        axisY = (xs[next] - xs[side]) / length;
+      }
+      double overlap = overlapOnAxis(axisX, axisY, xs, ys);
+      if (overlap <= 0) {
+        return;
+      }
+      if (overlap < minOverlap) {
+        minOverlap = overlap;
+        normalX = axisX;
+        normalY = axisY;
+        bumperAxis = i < 2;
+      }
+    }
+
+    // Point the normal from the reef toward the robot
+    if ((x - reefCenterXs[reef]) * normalX + (y - reefCenterYs[reef]) * normalY < 0) {
+      normalX = -normalX;
+      normalY = -normalY;
+    }
+
+    // On a bumper axis a reef corner is pushing into a bumper, and otherwise a bumper corner is
+    // pushing into a reef face. Either way the contact is the corner that went deepest.
+    double contactX;
+    double contactY;
+    if (bumperAxis) {
+      int deepest = 0;
+      for (int i = 1; i < REEF_SIDES; i++) {
+        if (normalX * xs[i] + normalY * ys[i] > normalX * xs[deepest] + normalY * ys[deepest]) {
+          deepest = i;
+        }
+      }
+      contactX = xs[deepest];
+      contactY = ys[deepest];
+    } else {
+      int deepest = 0;
+      for (int i = 1; i < 4; i++) {
+        if (normalX * cornerXs[i] + normalY * cornerYs[i]
+            < normalX * cornerXs[deepest] + normalY * cornerYs[deepest]) {
+          deepest = i;
+        }
+      }
+      contactX = cornerXs[deepest];
+      contactY = cornerYs[deepest];
+    }
+    resolveContact(normalX, normalY, minOverlap, contactX, contactY);
+  }
+
+  /** Returns how far the bumpers and a reef overlap when projected onto an axis. */
+  private double overlapOnAxis(double axisX, double axisY, double[] xs, double[] ys) {
+    double bumperMin = Double.POSITIVE_INFINITY;
+    double bumperMax = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < 4; i++) {
+      double projection = axisX * cornerXs[i] + axisY * cornerYs[i];
+      bumperMin = Math.min(bumperMin, projection);
+      bumperMax = Math.max(bumperMax, projection);
+    }
+    double reefMin = Double.POSITIVE_INFINITY;
+    double reefMax = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < xs.length; i++) {
+      double projection = axisX * xs[i] + axisY * ys[i];
+      reefMin = Math.min(reefMin, projection);
+      reefMax = Math.max(reefMax, projection);
+    }
+    return Math.min(bumperMax, reefMax) - Math.max(bumperMin, reefMin);
+  }
+
+  /**
+   * Pushes the robot out of an obstacle along the contact normal, and stops it moving into the
+   * obstacle at the contact point. Collisions are inelastic and frictionless.
+   */
+  private void resolveContact(
+      double normalX, double normalY, double depth, double contactX, double contactY) {
+    double offsetX = contactX - x;
+    double offsetY = contactY - y;
+    x += normalX * depth;
+    y += normalY * depth;
+    for (int i = 0; i < 4; i++) {
+      cornerXs[i] += normalX * depth;
+      cornerYs[i] += normalY * depth;
+    }
+
+    double normalVelocity = (vx - omega * offsetY) * normalX + (vy + omega * offsetX) * normalY;
+    if (normalVelocity < 0) {
+      double lever = offsetX * normalY - offsetY * normalX;
+      double impulse = -normalVelocity / (1 / massKg + lever * lever / moiKgMetersSquared);
+      vx += impulse * normalX / massKg;
+      vy += impulse * normalY / massKg;
+      omega += impulse * lever / moiKgMetersSquared;
+    }
+  }
+}
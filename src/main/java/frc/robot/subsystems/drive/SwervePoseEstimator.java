@@ -0,0 +1,478 @@
+package frc.robot.subsystems.drive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Drop-in replacement for WPILib's {@code SwerveDrivePoseEstimator}, built for the main loop.
+ *
+ * <p>The math matches WPILib: wheel odometry is fused with the gyro, and each vision measurement
+ * is blended into the estimate at its own timestamp with a Kalman-style gain, after which newer
+ * odometry is applied on top as a rigid correction. The difference is storage. Odometry history
+ * and vision updates live in fixed-capacity rings of parallel primitive arrays instead of TreeMaps
+ * of boxed poses. Sampling the history is a binary search with interpolation, and applying a
+ * correction is a constant-time transform. Nothing is allocated after construction, except the
+ * {@link Pose2d} returned by {@link #getEstimatedPosition()}, which is cached until the estimate
+ * changes.
+ */
+public class SwervePoseEstimator {
+  private static final double BUFFER_DURATION = 1.5; // Seconds, same as WPILib
+  private static final int HISTORY_CAPACITY = 512; // ~2 s at 250 Hz
+  private static final int VISION_CAPACITY = 64;
+
+  // Forward kinematics, module delta vectors -> robot relative [dx, dy, dtheta]
+  private final double[][] forwardKinematics = new double[3][8];
+
+  // Squared state standard deviations, and the vision gain for the latest measurement std devs
+  private final double[] q = new double[3];
+  private final double[] visionK = new double[3];
+
+  // Wheel odometry state
+  private double odometryX;
+  private double odometryY;
+  private double odometryTheta;
+  private double gyroOffset;
+  private double previousAngle;
+  private final double[] previousDistances = new double[4];
+
+  // Odometry pose history, ring of [timestamp, x, y, theta]
+  private final double[] historyTime = new double[HISTORY_CAPACITY];
+  private final double[] historyX = new double[HISTORY_CAPACITY];
+  private final double[] historyY = new double[HISTORY_CAPACITY];
+  private final double[] historyTheta = new double[HISTORY_CAPACITY];
+  private int historyStart = 0;
+  private int historyCount = 0;
+
+  // Vision updates, ring of the corrected pose and the odometry pose at the same timestamp
+  private final double[] visionTime = new double[VISION_CAPACITY];
+  private final double[] visionX = new double[VISION_CAPACITY];
+  private final double[] visionY = new double[VISION_CAPACITY];
+  private final double[] visionTheta = new double[VISION_CAPACITY];
+  private final double[] visionOdometryX = new double[VISION_CAPACITY];
+  private final double[] visionOdometryY = new double[VISION_CAPACITY];
+  private final double[] visionOdometryTheta = new double[VISION_CAPACITY];
+  private int visionStart = 0;
+  private int visionCount = 0;
+
+  // Current estimate
+  private double estimateX;
+  private double estimateY;
+  private double estimateTheta;
+  private Pose2d estimate = null;
+
+  // Scratch output for pose math, [x, y, theta]
+  private final double[] scratch = new double[3];
+
+  // Scratch module positions for the SwerveModulePosition overload
+  private final double[] moduleDistances = new double[4];
+  private final double[] moduleCos = new double[4];
+  private final double[] moduleSin = new double[4];
+
+  /**
+   * Constructs a pose estimator with default standard deviations, matching WPILib's defaults for
+   * swerve. The state standard deviations are 0.1 m, 0.1 m, and 0.1 rad, and the vision standard
+   * deviations are 0.9 m, 0.9 m, and 0.9 rad.
+   *
+   * @param moduleTranslations The locations of the modules relative to the robot center
+   * @param gyroAngle The current gyro angle
+   * @param modulePositions The current module positions
+   * @param initialPose The starting pose estimate
+   */
+  public SwervePoseEstimator(
+      Translation2d[] moduleTranslations,
+      Rotation2d gyroAngle,
+      SwerveModulePosition[] modulePositions,
+      Pose2d initialPose) {
+    // Same inverse kinematics matrix as SwerveDriveKinematics, [vx, vy, omega] -> module vectors
+    SimpleMatrix inverseKinematics = new SimpleMatrix(8, 3);
+    for (int i = 0; i < 4; i++) {
+      inverseKinematics.setRow(2 * i, 0, 1, 0, -moduleTranslations[i].getY());
+      inverseKinematics.setRow(2 * i + 1, 0, 0, 1, moduleTranslations[i].getX());
+    }
+    SimpleMatrix pseudoInverse = inverseKinematics.pseudoInverse();
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < 8; col++) {
+        forwardKinematics[row][col] = pseudoInverse.get(row, col);
+      }
+    }
+
+    for (int i = 0; i < 3; i++) {
+      q[i] = 0.1 * 0.1;
+    }
+    setVisionMeasurementStdDevs(0.9, 0.9, 0.9);
+    resetPosition(gyroAngle, modulePositions, initialPose);
+  }
+
+  /**
+   * Sets the standard deviations used for vision measurements until they are changed again.
+   *
+   * @param x Standard deviation of the x position in meters
+   * @param y Standard deviation of the y position in meters
+   * @param theta Standard deviation of the heading in radians
+   */
+  public void setVisionMeasurementStdDevs(double x, double y, double theta) {
+    visionK[0] = calculateGain(q[0], x * x);
+    visionK[1] = calculateGain(q[1], y * y);
+    visionK[2] = calculateGain(q[2], theta * theta);
+  }
+
+  /** Resets odometry and the pose estimate, and clears all history. */
+  public void resetPosition(
+      Rotation2d gyroAngle, SwerveModulePosition[] modulePositions, Pose2d pose) {
+    gyroOffset = pose.getRotation().getRadians() - gyroAngle.getRadians();
+    previousAngle = pose.getRotation().getRadians();
+    odometryX = pose.getX();
+    odometryY = pose.getY();
+    odometryTheta = previousAngle;
+    for (int i = 0; i < 4; i++) {
+      previousDistances[i] = modulePositions[i].distanceMeters;
+    }
+    historyCount = 0;
+    visionCount = 0;
+    setEstimate(odometryX, odometryY, odometryTheta);
+  }
+
+  /** Returns the current pose estimate. */
+  public Pose2d getEstimatedPosition() {
+    if (estimate == null) {
+      estimate = new Pose2d(estimateX, estimateY, Rotation2d.fromRadians(estimateTheta));
+    }
+    return estimate;
+  }
+
+  /**
+   * Updates the estimate with wheel odometry and gyro data. Should be called for every odometry
+   * sample, in timestamp order.
+   *
+   * @param timestampSeconds The time of the sample, in the same epoch as vision timestamps
+   * @param gyroAngle The current gyro angle
+   * @param modulePositions The current module positions
+   */
+  public void updateWithTime(
+      double timestampSeconds, Rotation2d gyroAngle, SwerveModulePosition[] modulePositions) {
+    for (int i = 0; i < 4; i++) {
+      moduleDistances[i] = modulePositions[i].distanceMeters;
+      moduleCos[i] = modulePositions[i].angle.getCos();
+      moduleSin[i] = modulePositions[i].angle.getSin();
+    }
+    updateWithTime(timestampSeconds, gyroAngle.getRadians(), moduleDistances, moduleCos, moduleSin);
+  }
+
+  /**
+   * Same as {@link #updateWithTime(double, Rotation2d, SwerveModulePosition[])}, with the module
+   * positions given as parallel arrays of distances and angle unit vectors.
+   *
+   * @param timestampSeconds The time of the sample, in the same epoch as vision timestamps
+   * @param gyroAngleRad The current gyro angle in radians
+   * @param distancesMeters The current module drive positions
+   * @param angleCos The cosines of the current module angles
+   * @param angleSin The sines of the current module angles
+   */
+  public void updateWithTime(
+      double timestampSeconds,
+      double gyroAngleRad,
+      double[] distancesMeters,
+      double[] angleCos,
+      double[] angleSin) {
+    // Robot relative twist from the module deltas, with the heading change from the gyro
+    double dx = 0.0;
+    double dy = 0.0;
+    for (int i = 0; i < 4; i++) {
+      double delta = distancesMeters[i] - previousDistances[i];
+      double deltaX = delta * angleCos[i];
+      double deltaY = delta * angleSin[i];
+      dx += forwardKinematics[0][2 * i] * deltaX + forwardKinematics[0][2 * i + 1] * deltaY;
+      dy += forwardKinematics[1][2 * i] * deltaX + forwardKinematics[1][2 * i + 1] * deltaY;
+      previousDistances[i] = distancesMeters[i];
+    }
+    double angle = gyroAngleRad + gyroOffset;
+    double dtheta = MathUtil.angleModulus(angle - previousAngle);
+    previousAngle = angle;
+
+    exp(odometryX, odometryY, odometryTheta, dx, dy, dtheta, scratch);
+    odometryX = scratch[0];
+    odometryY = scratch[1];
+    odometryTheta = angle;
+    addHistory(timestampSeconds, odometryX, odometryY, odometryTheta);
+
+    if (visionCount == 0) {
+      setEstimate(odometryX, odometryY, odometryTheta);
+    } else {
+      compensate(visionIndex(visionCount - 1), odometryX, odometryY, odometryTheta, scratch);
+      setEstimate(scratch[0], scratch[1], scratch[2]);
+    }
+  }
+
+  /**
+   * Adds a vision measurement with the given standard deviations, which are kept for later
+   * measurements.
+   */
+  public void addVisionMeasurement(
+      Pose2d visionRobotPoseMeters,
+      double timestampSeconds,
+      Matrix<N3, N1> visionMeasurementStdDevs) {
+    setVisionMeasurementStdDevs(
+        visionMeasurementStdDevs.get(0, 0),
+        visionMeasurementStdDevs.get(1, 0),
+        visionMeasurementStdDevs.get(2, 0));
+    addVisionMeasurement(visionRobotPoseMeters, timestampSeconds);
+  }
+
+  /** Adds a vision measurement with the current vision standard deviations. */
+  public void addVisionMeasurement(Pose2d visionRobotPoseMeters, double timestampSeconds) {
+    // Skip measurements older than the history
+    if (historyCount == 0
+        || historyTime[historyIndex(historyCount - 1)] - BUFFER_DURATION > timestampSeconds) {
+      return;
+    }
+    cleanUpVisionUpdates();
+
+    // Odometry pose at the measurement time
+    sampleHistory(timestampSeconds, scratch);
+    double odomX = scratch[0];
+    double odomY = scratch[1];
+    double odomTheta = scratch[2];
+
+    // Estimated pose at the measurement time, using the latest vision update before it. Like the
+    // odometry sample, the time is clamped to the history.
+    double newestTime = historyTime[historyIndex(historyCount - 1)];
+    double sampleTime = MathUtil.clamp(timestampSeconds, historyTime[historyStart], newestTime);
+    int previousUpdate = floorVisionUpdate(sampleTime);
+    double sampleX = odomX;
+    double sampleY = odomY;
+    double sampleTheta = odomTheta;
+    if (previousUpdate >= 0) {
+      compensate(visionIndex(previousUpdate), odomX, odomY, odomTheta, scratch);
+      sampleX = scratch[0];
+      sampleY = scratch[1];
+      sampleTheta = scratch[2];
+    }
+
+    // Scale the twist from the estimate to the measurement by the vision gain
+    log(
+        sampleX,
+        sampleY,
+        sampleTheta,
+        visionRobotPoseMeters.getX(),
+        visionRobotPoseMeters.getY(),
+        visionRobotPoseMeters.getRotation().getRadians(),
+        scratch);
+    exp(
+        sampleX,
+        sampleY,
+        sampleTheta,
+        visionK[0] * scratch[0],
+        visionK[1] * scratch[1],
+        visionK[2] * scratch[2],
+        scratch);
+
+    // Record the update, replacing one at the same time and dropping any that are newer, since
+    // they were based on the old estimate
+    visionCount = floorVisionUpdate(timestampSeconds) + 1;
+    if (visionCount > 0 && visionTime[visionIndex(visionCount - 1)] == timestampSeconds) {
+      visionCount--;
+    }
+    if (visionCount == VISION_CAPACITY) {
+      visionStart = visionIndex(1);
+      visionCount--;
+    }
+    int index = visionIndex(visionCount++);
+    visionTime[index] = timestampSeconds;
+    visionX[index] = scratch[0];
+    visionY[index] = scratch[1];
+    visionTheta[index] = scratch[2];
+    visionOdometryX[index] = odomX;
+    visionOdometryY[index] = odomY;
+    visionOdometryTheta[index] = odomTheta;
+
+    // Apply the correction to the latest odometry pose
+    compensate(index, odometryX, odometryY, odometryTheta, scratch);
+    setEstimate(scratch[0], scratch[1], scratch[2]);
+  }
+
+  private void setEstimate(double x, double y, double theta) {
+    estimateX = x;
+    estimateY = y;
+    estimateTheta = theta;
+    estimate = null;
+  }
+
+  private int historyIndex(int i) {
+    return (historyStart + i) % HISTORY_CAPACITY;
+  }
+
+  private int visionIndex(int i) {
+    return (visionStart + i) % VISION_CAPACITY;
+  }
+
+  private void addHistory(double timestamp, double x, double y, double theta) {
+    if (historyCount > 0) {
+      double newest = historyTime[historyIndex(historyCount - 1)];
+      if (timestamp < newest) {
+        return; // Out of order, the history must stay sorted
+      } else if (timestamp == newest) {
+        historyCount--; // Replace the newest sample
+      }
+    }
+
+    // Drop samples that are full or outside the history window
+    while (historyCount > 0
+        && (historyCount == HISTORY_CAPACITY
+            || timestamp - historyTime[historyStart] >= BUFFER_DURATION)) {
+      historyStart = historyIndex(1);
+      historyCount--;
+    }
+
+    int index = historyIndex(historyCount++);
+    historyTime[index] = timestamp;
+    historyX[index] = x;
+    historyY[index] = y;
+    historyTheta[index] = theta;
+  }
+
+  /**
+   * Interpolates the odometry history at a timestamp, clamped to the ends of the history. Same as
+   * {@code Pose2d.interpolate}, which scales the twist between the samples.
+   */
+  private void sampleHistory(double timestamp, double[] out) {
+    // Find the first sample at or after the timestamp
+    int low = 0;
+    int high = historyCount - 1;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (historyTime[historyIndex(mid)] < timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    int upper = historyIndex(low);
+    if (low == 0 || historyTime[upper] <= timestamp) {
+      out[0] = historyX[upper];
+      out[1] = historyY[upper];
+      out[2] = historyTheta[upper];
+      return;
+    }
+    int lower = historyIndex(low - 1);
+    double t = (timestamp - historyTime[lower]) / (historyTime[upper] - historyTime[lower]);
+    log(
+        historyX[lower],
+        historyY[lower],
+        historyTheta[lower],
+        historyX[upper],
+        historyY[upper],
+        historyTheta[upper],
+        out);
+    exp(
+        historyX[lower],
+        historyY[lower],
+        historyTheta[lower],
+        out[0] * t,
+        out[1] * t,
+        out[2] * t,
+        out);
+  }
+
+  /** Returns the position of the latest vision update at or before a timestamp, or -1. */
+  private int floorVisionUpdate(double timestamp) {
+    int low = 0;
+    int high = visionCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (visionTime[visionIndex(mid)] <= timestamp) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - 1;
+  }
+
+  /** Removes vision updates that are no longer needed to sample the odometry history. */
+  private void cleanUpVisionUpdates() {
+    if (historyCount == 0 || visionCount == 0) {
+      return;
+    }
+    int newestNeeded = floorVisionUpdate(historyTime[historyStart]);
+    if (newestNeeded > 0) {
+      visionStart = visionIndex(newestNeeded);
+      visionCount -= newestNeeded;
+    }
+  }
+
+  /** Applies a vision update to an odometry pose, visionPose + (pose - odometryPose). */
+  private void compensate(int update, double x, double y, double theta, double[] out) {
+    double odomTheta = visionOdometryTheta[update];
+    double cos = Math.cos(odomTheta);
+    double sin = Math.sin(odomTheta);
+    double relX = cos * (x - visionOdometryX[update]) + sin * (y - visionOdometryY[update]);
+    double relY = -sin * (x - visionOdometryX[update]) + cos * (y - visionOdometryY[update]);
+
+    double visionCos = Math.cos(visionTheta[update]);
+    double visionSin = Math.sin(visionTheta[update]);
+    out[0] = visionX[update] + visionCos * relX - visionSin * relY;
+    out[1] = visionY[update] + visionSin * relX + visionCos * relY;
+    out[2] = MathUtil.angleModulus(visionTheta[update] + theta - odomTheta);
+  }
+
+  /** Same as {@code Pose2d.exp}, applying a robot relative twist to a pose. */
+  private static void exp(
+      double x, double y, double theta, double dx, double dy, double dtheta, double[] out) {
+    double sinTheta = Math.sin(dtheta);
+    double cosTheta = Math.cos(dtheta);
+    double s;
+    double c;
+    if (Math.abs(dtheta) < 1e-9) {
+      s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+      c = 0.5 * dtheta;
+    } else {
+      s = sinTheta / dtheta;
+      c = (1 - cosTheta) / dtheta;
+    }
+    double transformX = dx * s - dy * c;
+    double transformY = dx * c + dy * s;
+
+    double cos = Math.cos(theta);
+    double sin = Math.sin(theta);
+    out[0] = x + cos * transformX - sin * transformY;
+    out[1] = y + sin * transformX + cos * transformY;
+    out[2] = MathUtil.angleModulus(theta + dtheta);
+  }
+
+  /** Same as {@code Pose2d.log}, the robot relative twist from one pose to another. */
+  private static void log(
+      double x, double y, double theta, double endX, double endY, double endTheta, double[] out) {
+    double cos = Math.cos(theta);
+    double sin = Math.sin(theta);
+    double transformX = cos * (endX - x) + sin * (endY - y);
+    double transformY = -sin * (endX - x) + cos * (endY - y);
+    double dtheta = MathUtil.angleModulus(endTheta - theta);
+
+    double halfDtheta = dtheta / 2.0;
+    double cosMinusOne = Math.cos(dtheta) - 1;
+    double halfThetaByTanOfHalfDtheta;
+    if (Math.abs(cosMinusOne) < 1e-9) {
+      halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+    } else {
+      halfThetaByTanOfHalfDtheta = -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+    }
+
+    // Rotate by (halfThetaByTanOfHalfDtheta, -halfDtheta) and scale by its norm in one step
+    out[0] = transformX * halfThetaByTanOfHalfDtheta + transformY * halfDtheta;
+    out[1] = transformY * halfThetaByTanOfHalfDtheta - transformX * halfDtheta;
+    out[2] = dtheta;
+  }
+
+  /** Steady-state Kalman gain for one state, same as WPILib's closed form for a diagonal Q. */
+  private static double calculateGain(double q, double r) {
+    return q == 0.0 ? 0.0 : q / (q + Math.sqrt(q * r));
+  }
+}
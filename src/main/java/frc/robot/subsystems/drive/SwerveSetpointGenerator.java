@@ -0,0 +1,345 @@
+package frc.robot.subsystems.drive;
+
+import com.pathplanner.lib.config.RobotConfig;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Turns requested chassis speeds into module setpoints the drivetrain can actually follow from its
+ * previous setpoints. Each cycle the setpoint moves from the previous chassis speeds toward the
+ * requested ones, but only as far as every module can keep up: no module steers faster than the
+ * turn motors can, and no module's velocity changes faster than its drive motor torque, current
+ * limit and the carpet's friction allow. Moving the chassis speeds rather than each module keeps
+ * the modules consistent with each other, so they don't fight.
+ *
+ * <p>Modules turn by at most 90 degrees, flipping the drive direction otherwise, like {@link
+ * SwerveModuleState#optimize}. A module that is stopped may point anywhere, so it isn't steering
+ * limited.
+ *
+ * <p>All of the state is kept in primitive arrays and the output states are owned and updated in
+ * place. {@link Rotation2d} is immutable though, so each module whose heading changes gets a new
+ * one. While the robot is turning or changing direction that is every module on most cycles, up to
+ * four small objects per cycle. Changes too small to matter are ignored, so driving straight or
+ * holding still doesn't allocate.
+ */
+class SwerveSetpointGenerator {
+  private static final double GRAVITY = 9.81;
+  private static final double EPSILON = 1e-6;
+  private static final double HEADING_EPSILON = 1e-9;
+  private static final int STEERING_SEARCH_ITERATIONS = 10;
+
+  /** The module setpoints from the last call to {@link #update}, FL, FR, BL, BR. */
+  final SwerveModuleState[] setpointStates =
+      new SwerveModuleState[] {
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState(),
+        new SwerveModuleState()
+      };
+
+  /** The chassis speeds the module setpoints were made from. */
+  final ChassisSpeeds setpointSpeeds = new ChassisSpeeds();
+
+  /** The requested chassis speeds after discretization and desaturation. */
+  final ChassisSpeeds desiredSpeeds = new ChassisSpeeds();
+
+  private final double[] moduleX = new double[4];
+  private final double[] moduleY = new double[4];
+
+  // Forward kinematics, module velocity vectors -> [vx, vy, omega]
+  private final double[][] forwardKinematics = new double[3][8];
+  private final double maxSteerVelocityRadPerSec;
+
+  private double maxModuleSpeed;
+  private RobotConfig config = null;
+  private double frictionAcceleration = Double.POSITIVE_INFINITY;
+
+  // Previous setpoint, with each module's heading as a unit vector and its speed along it
+  private final double[] headingCos = new double[] {1, 1, 1, 1};
+  private final double[] headingSin = new double[4];
+  private final double[] speeds = new double[4];
+
+  // Headings to hold while stopped, until a nonzero velocity is requested
+  private final double[] parkedCos = new double[4];
+  private final double[] parkedSin = new double[4];
+  private boolean parked = false;
+
+  // Desired module velocities, filled in by update
+  private final double[] desiredVx = new double[4];
+  private final double[] desiredVy = new double[4];
+
+  /**
+   * Creates a new SwerveSetpointGenerator. Drive acceleration isn't limited until {@link
+   * #setRobotConfig} is called.
+   *
+   * @param moduleTranslations The module locations relative to the robot center, FL, FR, BL, BR.
+   * @param maxModuleSpeed The fastest a module can drive in meters/sec.
+   * @param maxSteerVelocityRadPerSec The fastest a module can steer.
+   */
+  SwerveSetpointGenerator(
+      Translation2d[] moduleTranslations, double maxModuleSpeed, double maxSteerVelocityRadPerSec) {
+    for (int i = 0; i < 4; i++) {
+      moduleX[i] = moduleTranslations[i].getX();
+      moduleY[i] = moduleTranslations[i].getY();
+      setpointStates[i].angle = Rotation2d.kZero;
+    }
+
+    // Same inverse kinematics matrix as SwerveDriveKinematics, [vx, vy, omega] -> module vectors
+    SimpleMatrix inverseKinematics = new SimpleMatrix(8, 3);
+    for (int i = 0; i < 4; i++) {
+      inverseKinematics.setRow(2 * i, 0, 1, 0, -moduleY[i]);
+      inverseKinematics.setRow(2 * i + 1, 0, 0, 1, moduleX[i]);
+    }
+    SimpleMatrix pseudoInverse = inverseKinematics.pseudoInverse();
+    for (int row = 0; row < 3; row++) {
+      for (int col = 0; col < 8; col++) {
+        forwardKinematics[row][col] = pseudoInverse.get(row, col);
+      }
+    }
+
+    this.maxModuleSpeed = maxModuleSpeed;
+    this.maxSteerVelocityRadPerSec = maxSteerVelocityRadPerSec;
+  }
+
+  /** Uses the module speed, drive motor and friction limits from the PathPlanner config. */
+  void setRobotConfig(RobotConfig config) {
+    this.config = config;
+    maxModuleSpeed = config.moduleConfig.maxDriveVelocityMPS;
+    frictionAcceleration = config.moduleConfig.wheelCOF * GRAVITY;
+  }
+
+  /**
+   * Sets a module's setpoint to its measured state, for when it was driven without following the
+   * setpoints. The chassis speeds are refit to all of the modules' setpoints, so the next update
+   * starts from what the drivetrain is actually doing.
+   *
+   * @param module The module index, FL, FR, BL, BR.
+   * @param speedMetersPerSec The module's measured speed.
+   * @param headingRad The module's measured heading.
+   */
+  void reset(int module, double speedMetersPerSec, double headingRad) {
+    setHeading(module, Math.cos(headingRad), Math.sin(headingRad));
+    speeds[module] = speedMetersPerSec;
+    setpointStates[module].speedMetersPerSecond = speedMetersPerSec;
+
+    // Least squares fit of the chassis speeds to the module velocities
+    double vx = 0.0;
+    double vy = 0.0;
+    double omega = 0.0;
+    for (int i = 0; i < 4; i++) {
+      double moduleVx = speeds[i] * headingCos[i];
+      double moduleVy = speeds[i] * headingSin[i];
+      vx += forwardKinematics[0][2 * i] * moduleVx + forwardKinematics[0][2 * i + 1] * moduleVy;
+      vy += forwardKinematics[1][2 * i] * moduleVx + forwardKinematics[1][2 * i + 1] * moduleVy;
+      omega += forwardKinematics[2][2 * i] * moduleVx + forwardKinematics[2][2 * i + 1] * moduleVy;
+    }
+    setpointSpeeds.vxMetersPerSecond = vx;
+    setpointSpeeds.vyMetersPerSecond = vy;
+    setpointSpeeds.omegaRadiansPerSecond = omega;
+  }
+
+  /**
+   * Sets the headings the modules turn to once they are stopped, until the next time a nonzero
+   * velocity is requested.
+   */
+  void park(Rotation2d[] headings) {
+    for (int i = 0; i < 4; i++) {
+      parkedCos[i] = headings[i].getCos();
+      parkedSin[i] = headings[i].getSin();
+    }
+    parked = true;
+  }
+
+  /**
+   * Moves the setpoint toward the requested robot relative speeds and updates {@link
+   * #setpointStates}.
+   *
+   * @param vx Forward velocity in meters/sec.
+   * @param vy Leftward velocity in meters/sec.
+   * @param omega Counterclockwise angular velocity in radians/sec.
+   * @param dtSeconds The time until the next update.
+   */
+  void update(double vx, double vy, double omega, double dtSeconds) {
+    discretize(vx, vy, omega, dtSeconds);
+    vx = desiredSpeeds.vxMetersPerSecond;
+    vy = desiredSpeeds.vyMetersPerSecond;
+    omega = desiredSpeeds.omegaRadiansPerSecond;
+
+    // Desaturate by scaling the chassis speeds, which scales every module by the same amount
+    double fastestSpeed = 0.0;
+    for (int i = 0; i < 4; i++) {
+      desiredVx[i] = vx - omega * moduleY[i];
+      desiredVy[i] = vy + omega * moduleX[i];
+      fastestSpeed = Math.max(fastestSpeed, Math.hypot(desiredVx[i], desiredVy[i]));
+    }
+    if (fastestSpeed > maxModuleSpeed) {
+      double scale = maxModuleSpeed / fastestSpeed;
+      vx *= scale;
+      vy *= scale;
+      omega *= scale;
+      for (int i = 0; i < 4; i++) {
+        desiredVx[i] *= scale;
+        desiredVy[i] *= scale;
+      }
+      desiredSpeeds.vxMetersPerSecond = vx;
+      desiredSpeeds.vyMetersPerSecond = vy;
+      desiredSpeeds.omegaRadiansPerSecond = omega;
+    }
+    boolean stopping = fastestSpeed < EPSILON;
+    if (!stopping) {
+      parked = false;
+    }
+
+    // Find how far toward the desired speeds every module can get this cycle
+    double prevVx = setpointSpeeds.vxMetersPerSecond;
+    double prevVy = setpointSpeeds.vyMetersPerSecond;
+    double prevOmega = setpointSpeeds.omegaRadiansPerSecond;
+    double fraction = 1.0;
+    for (int i = 0; i < 4; i++) {
+      double startVx = prevVx - prevOmega * moduleY[i];
+      double startVy = prevVy + prevOmega * moduleX[i];
+      double changeVx = desiredVx[i] - startVx;
+      double changeVy = desiredVy[i] - startVy;
+      double change = Math.hypot(changeVx, changeVy);
+      if (change < EPSILON) {
+        continue;
+      }
+
+      // The velocity change is linear in the fraction, so the acceleration limit is too
+      double startSpeed = Math.abs(speeds[i]);
+      boolean speedingUp = Math.hypot(desiredVx[i], desiredVy[i]) > startSpeed;
+      double maxChange = getMaxAcceleration(startSpeed, speedingUp) * dtSeconds;
+      fraction = Math.min(fraction, maxChange / change);
+
+      // Steering isn't limited when starting from a stop or stopping
+      if (startSpeed < EPSILON || stopping) {
+        continue;
+      }
+      double maxSteer = maxSteerVelocityRadPerSec * dtSeconds;
+      if (getSteerAngle(i, startVx + fraction * changeVx, startVy + fraction * changeVy)
+          > maxSteer) {
+        // Search for the furthest fraction within the steering limit
+        double low = 0.0;
+        double high = fraction;
+        for (int j = 0; j < STEERING_SEARCH_ITERATIONS; j++) {
+          double mid = (low + high) / 2.0;
+          if (getSteerAngle(i, startVx + mid * changeVx, startVy + mid * changeVy) > maxSteer) {
+            high = mid;
+          } else {
+            low = mid;
+          }
+        }
+        fraction = low;
+      }
+    }
+
+    // Apply the fraction to the chassis speeds and work out the module setpoints from them
+    vx = prevVx + fraction * (vx - prevVx);
+    vy = prevVy + fraction * (vy - prevVy);
+    omega = prevOmega + fraction * (omega - prevOmega);
+    setpointSpeeds.vxMetersPerSecond = vx;
+    setpointSpeeds.vyMetersPerSecond = vy;
+    setpointSpeeds.omegaRadiansPerSecond = omega;
+    for (int i = 0; i < 4; i++) {
+      double moduleVx = vx - omega * moduleY[i];
+      double moduleVy = vy + omega * moduleX[i];
+      double speed = Math.hypot(moduleVx, moduleVy);
+      double cos = headingCos[i];
+      double sin = headingSin[i];
+      if (speed < EPSILON) {
+        // Hold the heading while stopped
+        speed = 0.0;
+        if (parked) {
+          cos = parkedCos[i];
+          sin = parkedSin[i];
+        }
+      } else {
+        double newCos = moduleVx / speed;
+        double newSin = moduleVy / speed;
+        if (startedStopped(i) || newCos * cos + newSin * sin >= 0.0) {
+          cos = newCos;
+          sin = newSin;
+        } else {
+          // Drive backwards rather than turning more than 90 degrees
+          cos = -newCos;
+          sin = -newSin;
+          speed = -speed;
+        }
+      }
+
+      speeds[i] = speed;
+      setpointStates[i].speedMetersPerSecond = speed;
+      setHeading(i, cos, sin);
+    }
+  }
+
+  /** Updates a module's heading, replacing its setpoint's angle only if it changed noticeably. */
+  private void setHeading(int module, double cos, double sin) {
+    if (Math.abs(cos - headingCos[module]) > HEADING_EPSILON
+        || Math.abs(sin - headingSin[module]) > HEADING_EPSILON) {
+      headingCos[module] = cos;
+      headingSin[module] = sin;
+      setpointStates[module].angle = new Rotation2d(cos, sin);
+    }
+  }
+
+  /** Returns whether a module's previous setpoint was stopped, so it can point anywhere. */
+  private boolean startedStopped(int module) {
+    return Math.abs(speeds[module]) < EPSILON;
+  }
+
+  /**
+   * Returns how far a module has to steer from its previous heading to drive at a velocity,
+   * allowing it to drive backwards.
+   */
+  private double getSteerAngle(int module, double moduleVx, double moduleVy) {
+    double angle =
+        Math.abs(
+            Math.atan2(
+                headingCos[module] * moduleVy - headingSin[module] * moduleVx,
+                headingCos[module] * moduleVx + headingSin[module] * moduleVy));
+    return angle > Math.PI / 2.0 ? Math.PI - angle : angle;
+  }
+
+  /**
+   * Returns the most a module's velocity can change per second. The drive motor can push harder
+   * when braking than when speeding up, because back EMF doesn't cut into the current, and the
+   * wheel can't push harder than friction allows.
+   */
+  private double getMaxAcceleration(double moduleSpeed, boolean speedingUp) {
+    if (config == null) {
+      return Double.POSITIVE_INFINITY;
+    }
+    var moduleConfig = config.moduleConfig;
+    double wheelVelocityRadPerSec = moduleSpeed / moduleConfig.wheelRadiusMeters;
+    var motor = moduleConfig.driveMotor;
+    double currentAmps =
+        speedingUp
+            ? motor.getCurrent(wheelVelocityRadPerSec, motor.nominalVoltageVolts)
+            : moduleConfig.driveCurrentLimit;
+    currentAmps = Math.max(0.0, Math.min(currentAmps, moduleConfig.driveCurrentLimit));
+    double forceNewtons = motor.getTorque(currentAmps) / moduleConfig.wheelRadiusMeters;
+    double motorAcceleration = forceNewtons / (config.massKG / config.numModules);
+    return Math.min(motorAcceleration, frictionAcceleration);
+  }
+
+  /**
+   * Stores speeds in {@link #desiredSpeeds} that follow the arc the requested speeds trace over
+   * one cycle, the same as {@link ChassisSpeeds#discretize}.
+   */
+  private void discretize(double vx, double vy, double omega, double dtSeconds) {
+    double dtheta = omega * dtSeconds;
+    double halfDtheta = dtheta / 2.0;
+    double cosMinusOne = Math.cos(dtheta) - 1.0;
+    double halfThetaByTanOfHalfDtheta =
+        Math.abs(cosMinusOne) < 1e-9
+            ? 1.0 - dtheta * dtheta / 12.0
+            : -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+    desiredSpeeds.vxMetersPerSecond = vx * halfThetaByTanOfHalfDtheta + vy * halfDtheta;
+    desiredSpeeds.vyMetersPerSecond = vy * halfThetaByTanOfHalfDtheta - vx * halfDtheta;
+    desiredSpeeds.omegaRadiansPerSecond = omega;
+  }
+}
@@ -1,7 +1,8 @@
 package frc.robot.subsystems.elevator;
 
 import edu.wpi.first.math.MathUtil;
-import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.controller.ElevatorFeedforward;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.Command.InterruptionBehavior;
@@ -13,23 +14,36 @@ import frc.robot.subsystems.elevator.elevator_motors.ElevatorIOInputsAutoLogged;
 import frc.robot.subsystems.elevator.limit_sensor.LimitSwitchSensorIO;
 import frc.robot.subsystems.elevator.limit_sensor.LimitSwitchSensorIOInputsAutoLogged;
 import frc.robot.util.LoggedTunableNumber;
+import frc.robot.util.LoopProfiler;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Elevator extends SubsystemBase {
 
-  private LoggedTunableNumber elevatorP = new LoggedTunableNumber("Elevator/P", 0.1);
-  private LoggedTunableNumber elevatorI = new LoggedTunableNumber("Elevator/I", 0.0);
-  private LoggedTunableNumber elevatorD = new LoggedTunableNumber("Elevator/D", 0.0);
-
-  // The constant power needed to keep the elevator at rest
-  private LoggedTunableNumber elevatorG = new LoggedTunableNumber("Elevator/G", 0.1);
-
-  private LoggedTunableNumber elevatorMaxSpeedUp =
-      new LoggedTunableNumber("Elevator/MaxSpeedUp", 0.5);
-  private LoggedTunableNumber elevatorMaxSpeedDown =
-      new LoggedTunableNumber("Elevator/MaxSpeedDown", 0.23);
+  private static final LoopProfiler.Section periodicTiming =
+      LoopProfiler.section("Elevator/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Elevator/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Elevator/ProcessInputs");
+
+  // Gains for profiled control. The feedforward is in volts, and positions are in the units of
+  // ElevatorIO.getPositionRads
+  private LoggedTunableNumber elevatorKs = new LoggedTunableNumber("Elevator/Profiled/kS", 0.1);
+  private LoggedTunableNumber elevatorKg = new LoggedTunableNumber("Elevator/Profiled/kG", 1.2);
+  private LoggedTunableNumber elevatorKv = new LoggedTunableNumber("Elevator/Profiled/kV", 0.25);
+  private LoggedTunableNumber elevatorKa = new LoggedTunableNumber("Elevator/Profiled/kA", 0.01);
+  private LoggedTunableNumber elevatorProfiledP =
+      new LoggedTunableNumber("Elevator/Profiled/P", 0.1);
+  private LoggedTunableNumber elevatorProfiledI =
+      new LoggedTunableNumber("Elevator/Profiled/I", 0.0);
+  private LoggedTunableNumber elevatorProfiledD =
+      new LoggedTunableNumber("Elevator/Profiled/D", 0.0);
+  private LoggedTunableNumber elevatorMaxProfileVelocity =
+      new LoggedTunableNumber("Elevator/Profiled/MaxVelocity", 40.0);
+  private LoggedTunableNumber elevatorMaxProfileAcceleration =
+      new LoggedTunableNumber("Elevator/Profiled/MaxAcceleration", 120.0);
 
   private LoggedTunableNumber elevatorMaxHeightRadians =
       new LoggedTunableNumber("Elevator/MaxHeightRadians", 21.166568756103516);
@@ -71,7 +85,9 @@ public class Elevator extends SubsystemBase {
   private final LimitSwitchSensorIOInputsAutoLogged limitSwitchSensorIOInputs =
       new LimitSwitchSensorIOInputsAutoLogged();
 
-  private final PIDController feedback = new PIDController(0, 0, 0);
+  private ElevatorFeedforward feedforward = new ElevatorFeedforward(0, 0, 0, 0);
+  private TrapezoidProfile profile = new TrapezoidProfile(new TrapezoidProfile.Constraints(0, 0));
+  private TrapezoidProfile.State profileSetpoint = new TrapezoidProfile.State();
 
   private boolean isHomed = false;
 
@@ -108,19 +124,46 @@ public class Elevator extends SubsystemBase {
     this.limitSwitchSensorIO = limitSwitchSensorIO;
   }
 
-  private int oldMaxAmps = 0;
-
   @Override
   public void periodic() {
+    periodicTiming.start();
+    updateInputsTiming.start();
     elevatorIO.updateInputs(elevatorIOInputs);
+    updateInputsTiming.stop();
+    processInputsTiming.start();
     Logger.processInputs("ElevatorMotors", elevatorIOInputs);
+    processInputsTiming.stop();
     elevatorIO.periodic();
+    updateInputsTiming.start();
     limitSwitchSensorIO.updateInputs(limitSwitchSensorIOInputs);
+    updateInputsTiming.stop();
+    processInputsTiming.start();
     Logger.processInputs("ElevatorLimitSwitch", limitSwitchSensorIOInputs);
+    processInputsTiming.stop();
+
+    elevatorIO.setMaxAmps((int) elevatorMaxAmps.get());
 
-    if (oldMaxAmps != (int) elevatorMaxAmps.get()) {
-      elevatorIO.setMaxAmps((int) elevatorMaxAmps.get());
-      oldMaxAmps = (int) elevatorMaxAmps.get();
+    // Not short-circuited, so every gain records that it was seen
+    int id = hashCode();
+    if (elevatorProfiledP.hasChanged(id)
+        | elevatorProfiledI.hasChanged(id)
+        | elevatorProfiledD.hasChanged(id)) {
+      elevatorIO.setPositionPID(
+          elevatorProfiledP.get(), elevatorProfiledI.get(), elevatorProfiledD.get());
+    }
+    if (elevatorKs.hasChanged(id)
+        | elevatorKg.hasChanged(id)
+        | elevatorKv.hasChanged(id)
+        | elevatorKa.hasChanged(id)) {
+      feedforward =
+          new ElevatorFeedforward(
+              elevatorKs.get(), elevatorKg.get(), elevatorKv.get(), elevatorKa.get());
+    }
+    if (elevatorMaxProfileVelocity.hasChanged(id) | elevatorMaxProfileAcceleration.hasChanged(id)) {
+      profile =
+          new TrapezoidProfile(
+              new TrapezoidProfile.Constraints(
+                  elevatorMaxProfileVelocity.get(), elevatorMaxProfileAcceleration.get()));
     }
 
     var currentCommand = getCurrentCommand();
@@ -132,6 +175,8 @@ public class Elevator extends SubsystemBase {
 
     leftMotorOverheatingAlert.set(elevatorIOInputs.tempCelsiusL > MAX_OK_TEMP_CELSIUS);
     rightMotorOverheatingAlert.set(elevatorIOInputs.tempCelsiusR > MAX_OK_TEMP_CELSIUS);
+
+    periodicTiming.stop();
   }
 
   @AutoLogOutput(key = "Elevator/CurrentPositionInches")
@@ -159,42 +204,87 @@ public class Elevator extends SubsystemBase {
   // Commands
 
   /**
-   * Runs the pid loop which moves the elevator to the right height. Don't end the command
-   * prematurely The height in inches is measured from the ground to the end effector pivot axis
+   * Moves the elevator to the right height. Don't end the command prematurely The height in inches
+   * is measured from the ground to the end effector pivot axis. For setpoints that are already
+   * profiled, use {@link #followSetpoint} instead.
+   *
+   * <p>Follows a trapezoid profile to the height. Each loop the next profile setpoint is sent to
+   * the motor controller's position loop, along with the feedforward for that step.
    */
   public Command goToHeight(DoubleSupplier heightInches) {
+    return Commands.runEnd(
+            () -> {
+              double targetInches =
+                  MathUtil.clamp(
+                      heightInches.getAsDouble(),
+                      getMinInchesFromGround(),
+                      getMaxInchesFromGround());
+              Logger.recordOutput("Elevator/TargetPositionInches", targetInches);
+
+              var next =
+                  profile.calculate(
+                      0.02,
+                      profileSetpoint,
+                      new TrapezoidProfile.State(inchesHeightToRadians(targetInches), 0));
+              double feedforwardVolts =
+                  feedforward.calculateWithVelocities(profileSetpoint.velocity, next.velocity);
+              profileSetpoint = next;
+
+              elevatorIO.setPositionSetpoint(next.position, feedforwardVolts);
+
+              Logger.recordOutput(
+                  "Elevator/ProfilePositionInches", radiansToInchesHeight(next.position));
+              Logger.recordOutput("Elevator/FeedforwardVolts", feedforwardVolts);
+            },
+            () -> {
+              setVelocity(0);
+            },
+            this)
+        .beforeStarting(
+            () -> profileSetpoint = new TrapezoidProfile.State(elevatorIO.getPositionRads(), 0))
+        .withInterruptBehavior(InterruptionBehavior.kCancelSelf)
+        .withName("Elevator Profiled Control");
+  }
 
-    var command =
-        Commands.runEnd(
-                () -> {
-                  Logger.recordOutput("Elevator/TargetPositionInches", heightInches.getAsDouble());
-                  feedback.setPID(elevatorP.get(), elevatorI.get(), elevatorD.get());
-
-                  var output =
-                      feedback.calculate(
-                              elevatorIO.getPositionRads(),
-                              this.inchesHeightToRadians(heightInches.getAsDouble()))
-                          + elevatorG.get();
-
-                  if (output > 0) {
-                    output = Math.min(output, elevatorMaxSpeedUp.get());
-                  } else {
-                    output = Math.max(output, -elevatorMaxSpeedDown.get());
-                  }
-
-                  output =
-                      MathUtil.clamp(output, -elevatorMaxSpeedDown.get(), elevatorMaxSpeedUp.get());
-
-                  setVelocity(output);
-                },
-                () -> {
-                  setVelocity(0);
-                },
-                this)
-            .withInterruptBehavior(InterruptionBehavior.kCancelSelf)
-            .withName("Elevator Setpoint Control");
-
-    return command;
+  /**
+   * Follows a height and velocity setpoint that is already profiled, like a sample of an
+   * ExtenderTrajectory. Each loop the setpoint is sent straight to the motor controller's position
+   * loop with its feedforward, without profiling it again.
+   *
+   * @param heightInches The setpoint height, from the ground to the end effector pivot axis
+   * @param velocityInchesPerSec The setpoint velocity
+   */
+  public Command followSetpoint(DoubleSupplier heightInches, DoubleSupplier velocityInchesPerSec) {
+    return Commands.runEnd(
+            () -> {
+              double targetInches =
+                  MathUtil.clamp(
+                      heightInches.getAsDouble(),
+                      getMinInchesFromGround(),
+                      getMaxInchesFromGround());
+              Logger.recordOutput("Elevator/TargetPositionInches", targetInches);
+
+              double velocity =
+                  velocityInchesPerSec.getAsDouble()
+                      * elevatorMaxHeightRadians.get()
+                      / (elevatorUpHeightInches.get() - elevatorDownHeightInches.get());
+              double feedforwardVolts =
+                  feedforward.calculateWithVelocities(profileSetpoint.velocity, velocity);
+              profileSetpoint.position = inchesHeightToRadians(targetInches);
+              profileSetpoint.velocity = velocity;
+
+              elevatorIO.setPositionSetpoint(profileSetpoint.position, feedforwardVolts);
+
+              Logger.recordOutput("Elevator/FeedforwardVolts", feedforwardVolts);
+            },
+            () -> {
+              setVelocity(0);
+            },
+            this)
+        .beforeStarting(
+            () -> profileSetpoint = new TrapezoidProfile.State(elevatorIO.getPositionRads(), 0))
+        .withInterruptBehavior(InterruptionBehavior.kCancelSelf)
+        .withName("Elevator Setpoint Following");
   }
 
   public Command manualControl(DoubleSupplier manualSpeed) {
@@ -24,6 +24,15 @@ public interface ElevatorIO {
 
   public void setVelocity(double normalizedVelocity);
 
+  /**
+   * Runs the motor controller's position loop toward a setpoint, in the same units as {@link
+   * #getPositionRads()}, with an added feedforward in volts.
+   */
+  public void setPositionSetpoint(double position, double feedforwardVolts);
+
+  /** Sets the gains of the motor controller's position loop. */
+  public void setPositionPID(double kP, double kI, double kD);
+
   public void setMaxAmps(int maxAmps);
 
   public double getPositionRads();
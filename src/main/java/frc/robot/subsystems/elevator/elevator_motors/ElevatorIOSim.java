@@ -1,49 +1,164 @@
 package frc.robot.subsystems.elevator.elevator_motors;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.controller.PIDController;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.wpilibj.simulation.ElevatorSim;
+import frc.robot.SimBattery;
+import frc.robot.SimVariation;
+
+/**
+ * Physics sim implementation of elevator IO. The carriage is simulated with {@link ElevatorSim},
+ * including gravity, the hard stops and the current limit. Each loop is split into substeps, and
+ * the position loop that runs on the motor controller is updated every substep, like the Spark
+ * MAX's 1 kHz loop. The motors run off the shared {@link SimBattery}.
+ *
+ * <p>Units match {@link ElevatorIOSparkMax}: {@link #getPositionRads()} is in motor rotations, like
+ * the Spark's encoder, and the logged inputs are in motor radians.
+ */
 public class ElevatorIOSim implements ElevatorIO {
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  public static final double DEFAULT_SUBSTEP_SECONDS = 0.001;
+
+  private static final DCMotor GEARBOX = DCMotor.getNEO(2);
+  private static final double GEARING = 5.0;
+  private static final double CARRIAGE_MASS_KG = 3.0;
+  private static final double TRAVEL_METERS = Units.inchesToMeters(80 - 12.5);
+
+  // The drum radius includes the multiplier of the cascade rigging, and is chosen so the full
+  // travel takes as many motor rotations as on the robot (Elevator/MaxHeightRadians)
+  private static final double TRAVEL_MOTOR_ROTATIONS = 21.17;
+  private static final double DRUM_RADIUS_METERS =
+      TRAVEL_METERS / Units.rotationsToRadians(TRAVEL_MOTOR_ROTATIONS) * GEARING;
+
+  // Motor heating isn't simulated
+  private static final double TEMP_CELSIUS = 25.0;
 
-  private final double MAX_MOTOR_SPEED_RADS = 100;
-  private double motorVelocityRads = 0.0;
-  private double motorPositionRads = 0.0;
+  private final ElevatorSim sim =
+      new ElevatorSim(
+          GEARBOX, GEARING, CARRIAGE_MASS_KG, DRUM_RADIUS_METERS, 0.0, TRAVEL_METERS, true, 0.0);
+  private final int substeps;
+  private final double substepSeconds;
+  private final int batterySource = SimBattery.addSource("Elevator");
+
+  private final PIDController positionController;
+  private boolean positionControl = false;
+  private double dutyCycle = 0.0;
+  private double feedforwardVolts = 0.0;
+
+  // Same default as the Spark MAX IO
+  private double maxAmpsPerMotor = 10;
+  private double appliedVolts = 0.0;
+  private double encoderOffsetRotations = 0.0;
+
+  public ElevatorIOSim() {
+    this(DEFAULT_SUBSTEP_SECONDS);
+  }
+
+  /**
+   * Creates a new ElevatorIOSim.
+   *
+   * @param substepSeconds How often the physics and the position loop are updated. Rounded so a
+   *     whole number of substeps fits in each loop.
+   */
+  public ElevatorIOSim(double substepSeconds) {
+    substeps = Math.max(1, (int) Math.round(LOOP_PERIOD_SECONDS / substepSeconds));
+    this.substepSeconds = LOOP_PERIOD_SECONDS / substeps;
+    positionController = new PIDController(0, 0, 0, this.substepSeconds);
+  }
 
   @Override
   public void setVelocity(double normalizedVelocity) {
-    // This isn't a very good simulation, but it works for now
-    motorVelocityRads = normalizedVelocity * MAX_MOTOR_SPEED_RADS;
+    positionControl = false;
+    dutyCycle = normalizedVelocity;
+    positionController.reset();
+  }
+
+  @Override
+  public void setPositionSetpoint(double position, double feedforwardVolts) {
+    positionControl = true;
+    positionController.setSetpoint(position);
+    this.feedforwardVolts = feedforwardVolts;
+  }
+
+  @Override
+  public void setPositionPID(double kP, double kI, double kD) {
+    positionController.setPID(kP, kI, kD);
   }
 
   @Override
   public void periodic() {
-    motorPositionRads += motorVelocityRads * 0.02;
+    double totalCurrentAmps = 0.0;
+    for (int i = 0; i < substeps; i++) {
+      double batteryVolts = SimBattery.getAvailableVoltage();
+
+      // The Spark's position loop outputs a duty cycle, and the feedforward is added after
+      double output =
+          positionControl
+              ? MathUtil.clamp(positionController.calculate(getPositionRads()), -1, 1)
+              : dutyCycle;
+      double volts =
+          MathUtil.clamp(
+              output * batteryVolts + (positionControl ? feedforwardVolts : 0),
+              -batteryVolts,
+              batteryVolts);
+
+      // The current limit caps the torque, which at a given speed caps the voltage
+      double motorVelocityRadsPerSec = getMotorVelocityRadsPerSec();
+      double maxTorque = GEARBOX.getTorque(maxAmpsPerMotor * GEARBOX.numMotors);
+      appliedVolts =
+          MathUtil.clamp(
+              volts,
+              GEARBOX.getVoltage(-maxTorque, motorVelocityRadsPerSec),
+              GEARBOX.getVoltage(maxTorque, motorVelocityRadsPerSec));
+
+      sim.setInputVoltage(appliedVolts * SimVariation.mechanismSpeedScale);
+      sim.update(substepSeconds);
+      totalCurrentAmps += Math.abs(sim.getCurrentDrawAmps());
+    }
+    SimBattery.setCurrent(batterySource, totalCurrentAmps / substeps);
+  }
+
+  private double getMotorPositionRads() {
+    return sim.getPositionMeters() / DRUM_RADIUS_METERS * GEARING;
+  }
+
+  private double getMotorVelocityRadsPerSec() {
+    return sim.getVelocityMetersPerSecond() / DRUM_RADIUS_METERS * GEARING;
   }
 
   @Override
   public double getPositionRads() {
-    return motorPositionRads;
+    return Units.radiansToRotations(getMotorPositionRads()) - encoderOffsetRotations;
   }
 
   @Override
   public void zeroEncoders() {
-    motorPositionRads = 0.0;
+    encoderOffsetRotations = Units.radiansToRotations(getMotorPositionRads());
   }
 
   @Override
   public void setMaxAmps(int maxAmps) {
-    // No-op for simulation
+    maxAmpsPerMotor = maxAmps;
   }
 
   @Override
   public void updateInputs(ElevatorIOInputs elevatorIOInputs) {
-    elevatorIOInputs.positionRadsL = motorPositionRads;
-    elevatorIOInputs.velocityRadsPerSecL = motorVelocityRads;
-    elevatorIOInputs.appliedVoltageL = 0.0;
-    elevatorIOInputs.outputCurrentAmpsL = 0.0;
-    elevatorIOInputs.tempCelsiusL = 0.0;
-
-    elevatorIOInputs.positionRadsR = motorPositionRads;
-    elevatorIOInputs.velocityRadsPerSecR = motorVelocityRads;
-    elevatorIOInputs.appliedVoltageR = 0.0;
-    elevatorIOInputs.outputCurrentAmpsR = 0.0;
-    elevatorIOInputs.tempCelsiusR = 0.0;
+    double positionRads = Units.rotationsToRadians(getPositionRads());
+    double velocityRadsPerSec = getMotorVelocityRadsPerSec();
+    double currentAmpsPerMotor = Math.abs(sim.getCurrentDrawAmps()) / GEARBOX.numMotors;
+
+    elevatorIOInputs.positionRadsL = positionRads;
+    elevatorIOInputs.velocityRadsPerSecL = velocityRadsPerSec;
+    elevatorIOInputs.appliedVoltageL = appliedVolts;
+    elevatorIOInputs.outputCurrentAmpsL = currentAmpsPerMotor;
+    elevatorIOInputs.tempCelsiusL = TEMP_CELSIUS;
+
+    elevatorIOInputs.positionRadsR = positionRads;
+    elevatorIOInputs.velocityRadsPerSecR = velocityRadsPerSec;
+    elevatorIOInputs.appliedVoltageR = appliedVolts;
+    elevatorIOInputs.outputCurrentAmpsR = currentAmpsPerMotor;
+    elevatorIOInputs.tempCelsiusR = TEMP_CELSIUS;
   }
 }
@@ -1,14 +1,25 @@
 package frc.robot.subsystems.elevator.elevator_motors;
 
+import com.revrobotics.spark.ClosedLoopSlot;
 import com.revrobotics.spark.SparkBase;
+import com.revrobotics.spark.SparkBase.ControlType;
+import com.revrobotics.spark.SparkClosedLoopController;
+import com.revrobotics.spark.SparkClosedLoopController.ArbFFUnits;
 import com.revrobotics.spark.SparkMax;
+import com.revrobotics.spark.config.ClosedLoopConfig.FeedbackSensor;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.math.util.Units;
+import frc.robot.util.SparkMaxConfigWriter;
 
 public class ElevatorIOSparkMax implements ElevatorIO {
 
   private final SparkMax leftMotor;
   private final SparkMax rightMotor;
+  private final SparkClosedLoopController closedLoop;
+
+  // Runtime changes go through these, so they are only sent when something changes
+  private final SparkMaxConfigWriter lConfigWriter;
+  private final SparkMaxConfigWriter rConfigWriter;
 
   private final SparkMaxConfig lConfig = new SparkMaxConfig();
   private final SparkMaxConfig rConfig = new SparkMaxConfig();
@@ -29,6 +40,9 @@ public class ElevatorIOSparkMax implements ElevatorIO {
     lConfig.smartCurrentLimit(10);
     rConfig.smartCurrentLimit(10);
 
+    // The position loop runs on the leader at 1 kHz, using the built in encoder in rotations
+    lConfig.closedLoop.feedbackSensor(FeedbackSensor.kPrimaryEncoder).pid(0, 0, 0);
+
     leftMotor.configure(
         lConfig,
         SparkBase.ResetMode.kResetSafeParameters,
@@ -37,32 +51,44 @@ public class ElevatorIOSparkMax implements ElevatorIO {
         rConfig,
         SparkBase.ResetMode.kResetSafeParameters,
         SparkBase.PersistMode.kPersistParameters);
+
+    closedLoop = leftMotor.getClosedLoopController();
+    lConfigWriter = new SparkMaxConfigWriter(leftMotor);
+    rConfigWriter = new SparkMaxConfigWriter(rightMotor);
   }
 
   @Override
   public void setMaxAmps(int maxAmps) {
-
-    lConfig.smartCurrentLimit(maxAmps);
-    rConfig.smartCurrentLimit(maxAmps);
-
-    leftMotor.configureAsync(
-        lConfig,
-        SparkBase.ResetMode.kResetSafeParameters,
-        SparkBase.PersistMode.kPersistParameters);
-    rightMotor.configureAsync(
-        rConfig,
-        SparkBase.ResetMode.kResetSafeParameters,
-        SparkBase.PersistMode.kPersistParameters);
+    lConfigWriter.setSmartCurrentLimit(maxAmps);
+    rConfigWriter.setSmartCurrentLimit(maxAmps);
   }
 
   @Override
-  public void periodic() {}
+  public void periodic() {
+    lConfigWriter.apply();
+    rConfigWriter.apply();
+  }
 
   @Override
   public void setVelocity(double normalizedVelocity) {
     leftMotor.set(normalizedVelocity);
   }
 
+  @Override
+  public void setPositionSetpoint(double position, double feedforwardVolts) {
+    closedLoop.setReference(
+        position,
+        ControlType.kPosition,
+        ClosedLoopSlot.kSlot0,
+        feedforwardVolts,
+        ArbFFUnits.kVoltage);
+  }
+
+  @Override
+  public void setPositionPID(double kP, double kI, double kD) {
+    lConfigWriter.setClosedLoopPID(kP, kI, kD);
+  }
+
   @Override
   public void zeroEncoders() {
     leftMotor.getEncoder().setPosition(0);
@@ -5,12 +5,20 @@ import edu.wpi.first.wpilibj2.command.Command.InterruptionBehavior;
 import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.util.LoggedTunableNumber;
+import frc.robot.util.LoopProfiler;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class EndEffector extends SubsystemBase {
 
+  private static final LoopProfiler.Section periodicTiming =
+      LoopProfiler.section("EndEffector/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("EndEffector/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("EndEffector/ProcessInputs");
+
   private LoggedTunableNumber maxAmps = new LoggedTunableNumber("EndEffectorWheels/Max Amps", 40.0);
 
   private final FlywheelIO io;
@@ -21,20 +29,31 @@ public class EndEffector extends SubsystemBase {
   }
 
   public void periodic() {
+    periodicTiming.start();
+    updateInputsTiming.start();
     io.updateInputs(inputs);
+    updateInputsTiming.stop();
     io.periodic();
     Logger.recordOutput(
         "EndEffectorWheels/CurrentCommand",
         getCurrentCommand() != null ? getCurrentCommand().getName() : "None");
+    processInputsTiming.start();
     Logger.processInputs("EndEffector", inputs);
+    processInputsTiming.stop();
 
     io.setMaxAmps((int) maxAmps.get());
+
+    periodicTiming.stop();
   }
 
   public void setVelocity(double velocity) {
     io.setVelocity(velocity);
   }
 
+  public double getVelocityPercent() {
+    return io.getVelocityPercent();
+  }
+
   public void zeroMotor() {
     io.zeroEncoder();
   }
@@ -1,38 +1,65 @@
 package frc.robot.subsystems.end_effector;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.SimBattery;
 
+/**
+ * Physics sim implementation of end effector wheel IO. The wheel is simulated as a NEO turning a
+ * small roller, and runs off the shared {@link SimBattery}.
+ */
 public class FlywheelIOSim implements FlywheelIO {
-  private double velocityRPM = 0.0;
+  private static final DCMotor GEARBOX = DCMotor.getNEO(1);
+  private static final double GEARING = 1.0;
+  private static final double MOI_KG_METERS_SQUARED = 0.0005;
 
-  private double maxSpeedRPM = 5000.0;
+  // Motor heating isn't simulated
+  private static final double TEMP_CELSIUS = 25.0;
 
-  public double inputVelocity = 0.0;
+  private final DCMotorSim sim =
+      new DCMotorSim(
+          LinearSystemId.createDCMotorSystem(GEARBOX, MOI_KG_METERS_SQUARED, GEARING), GEARBOX);
+  private final int batterySource = SimBattery.addSource("EndEffector");
 
-  private boolean newInput = false;
+  private double dutyCycle = 0.0;
+  private double maxAmps = 40;
+  private double appliedVolts = 0.0;
 
   @Override
   public void setVelocity(double velocityPercent) {
-    inputVelocity = maxSpeedRPM * velocityPercent;
-    newInput = true;
+    dutyCycle = velocityPercent;
+  }
+
+  @Override
+  public void setMaxAmps(int maxAmps) {
+    this.maxAmps = maxAmps;
   }
 
   @Override
   public double getVelocityPercent() {
-    return velocityRPM / maxSpeedRPM;
+    return sim.getAngularVelocityRadPerSec() * GEARING / GEARBOX.freeSpeedRadPerSec;
   }
 
   @Override
   public void periodic() {
+    // Like the SPARK MAX, the last duty cycle is held until a new one is set
+    double volts = MathUtil.clamp(dutyCycle, -1, 1) * SimBattery.getAvailableVoltage();
+
+    // The current limit caps the torque, which at a given speed caps the voltage
+    double motorVelocityRadsPerSec = sim.getAngularVelocityRadPerSec() * GEARING;
+    double maxTorque = GEARBOX.getTorque(maxAmps);
+    appliedVolts =
+        MathUtil.clamp(
+            volts,
+            GEARBOX.getVoltage(-maxTorque, motorVelocityRadsPerSec),
+            GEARBOX.getVoltage(maxTorque, motorVelocityRadsPerSec));
 
-    if (newInput) {
-      velocityRPM = inputVelocity;
-      // System.out.println("New Velocity: " + velocityRPM);
-      newInput = false;
-    } else {
-      velocityRPM = 0.0;
-      // System.out.println("Reset Velocity: " + velocityRPM);
-    }
+    sim.setInputVoltage(appliedVolts);
+    sim.update(0.02);
+    SimBattery.setCurrent(batterySource, sim.getCurrentDrawAmps());
   }
 
   @Override
@@ -43,11 +70,11 @@ public class FlywheelIOSim implements FlywheelIO {
 
   @Override
   public void updateInputs(FlywheelIOInputs inputs) {
-    inputs.velocityRadPerSec = velocityRPM * (2 * Math.PI / 60);
-    inputs.appliedVolts = 0.0;
-    inputs.currentAmps = 0.0;
-    inputs.tempCelsius = 0.0;
-    inputs.relativeEncoderPosition = new Rotation2d(0.0);
+    inputs.velocityRadPerSec = sim.getAngularVelocityRadPerSec();
+    inputs.appliedVolts = appliedVolts;
+    inputs.currentAmps = Math.abs(sim.getCurrentDrawAmps());
+    inputs.tempCelsius = TEMP_CELSIUS;
+    inputs.relativeEncoderPosition = new Rotation2d(sim.getAngularPositionRad());
     inputs.absoluteEncoderPosition = new Rotation2d(0.0);
   }
 }
@@ -4,33 +4,36 @@ import com.revrobotics.spark.SparkMax;
 import com.revrobotics.spark.config.SparkMaxConfig;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.util.Units;
-import frc.robot.util.SparkMaxUtil;
+import frc.robot.util.SparkMaxConfigWriter;
 
 public class FlywheelIOSparkMax implements FlywheelIO {
 
   private final SparkMax motor;
 
-  private final SparkMaxConfig config = new SparkMaxConfig();
+  private final SparkMaxConfigWriter config;
 
   public FlywheelIOSparkMax(int id) {
     this.motor = new SparkMax(id, SparkMax.MotorType.kBrushless);
 
-    var config = new SparkMaxConfig();
+    this.config = new SparkMaxConfigWriter(motor);
 
-    config.idleMode(SparkMaxConfig.IdleMode.kBrake);
-    SparkMaxUtil.configureMotor(motor, config);
+    config.setIdleMode(SparkMaxConfig.IdleMode.kBrake);
+    config.apply();
+  }
+
+  @Override
+  public void periodic() {
+    config.apply();
   }
 
   @Override
   public void setMaxAmps(int maxAmps) {
-    config.smartCurrentLimit(maxAmps);
-    SparkMaxUtil.configureMotor(motor, config);
+    config.setSmartCurrentLimit(maxAmps);
   }
 
   @Override
   public void setInverted(boolean inverted) {
-    config.inverted(inverted);
-    SparkMaxUtil.configureMotor(motor, config);
+    config.setInverted(inverted);
   }
 
   @Override
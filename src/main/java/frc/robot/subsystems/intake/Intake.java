@@ -1,10 +1,18 @@
 package frc.robot.subsystems.intake;
 
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.util.LoopProfiler;
 import org.littletonrobotics.junction.Logger;
 
 public class Intake extends SubsystemBase {
 
+  private static final LoopProfiler.Section periodicTiming =
+      LoopProfiler.section("Intake/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Intake/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Intake/ProcessInputs");
+
   private final IntakeWheelIO wheel;
 
   private final IntakeWheelIOInputsAutoLogged inputs = new IntakeWheelIOInputsAutoLogged();
@@ -14,9 +22,16 @@ public class Intake extends SubsystemBase {
   }
 
   public void periodic() {
+    periodicTiming.start();
+    updateInputsTiming.start();
     wheel.updateInputs(inputs);
+    updateInputsTiming.stop();
     wheel.periodic();
+    processInputsTiming.start();
     Logger.processInputs("IntakeWheel", inputs);
+    processInputsTiming.stop();
+
+    periodicTiming.stop();
   }
 
   public void setVelocity(double velocity) {
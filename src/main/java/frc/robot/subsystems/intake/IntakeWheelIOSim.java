@@ -1,36 +1,67 @@
 package frc.robot.subsystems.intake;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.system.plant.LinearSystemId;
+import edu.wpi.first.wpilibj.simulation.DCMotorSim;
+import frc.robot.SimBattery;
+
+/**
+ * Physics sim implementation of intake wheel IO. The wheel is simulated as a NEO turning a small
+ * roller, and runs off the shared {@link SimBattery}.
+ */
 public class IntakeWheelIOSim implements IntakeWheelIO {
-  private double velocityRPM = 0.0;
+  private static final DCMotor GEARBOX = DCMotor.getNEO(1);
+  private static final double GEARING = 1.0;
+  private static final double MOI_KG_METERS_SQUARED = 0.0005;
+
+  // Motor heating isn't simulated
+  private static final double TEMP_CELSIUS = 25.0;
 
-  private double maxSpeedRPM = 5000.0;
+  private final DCMotorSim sim =
+      new DCMotorSim(
+          LinearSystemId.createDCMotorSystem(GEARBOX, MOI_KG_METERS_SQUARED, GEARING), GEARBOX);
+  private final int batterySource = SimBattery.addSource("Intake");
 
-  public double inputVelocity = 0.0;
+  private final double maxAmps;
 
-  private boolean newInput = false;
+  private double dutyCycle = 0.0;
+  private double appliedVolts = 0.0;
+
+  /**
+   * @param maxCurrentA The current limit, matching the SPARK MAX's smart current limit.
+   */
+  public IntakeWheelIOSim(int maxCurrentA) {
+    maxAmps = maxCurrentA;
+  }
 
   @Override
   public void setVelocity(double velocityPercent) {
-    inputVelocity = maxSpeedRPM * velocityPercent;
-    newInput = true;
+    dutyCycle = velocityPercent;
   }
 
   @Override
   public double getVelocityPercent() {
-    return velocityRPM / maxSpeedRPM;
+    return sim.getAngularVelocityRadPerSec() * GEARING / GEARBOX.freeSpeedRadPerSec;
   }
 
   @Override
   public void periodic() {
+    // Like the SPARK MAX, the last duty cycle is held until a new one is set
+    double volts = MathUtil.clamp(dutyCycle, -1, 1) * SimBattery.getAvailableVoltage();
 
-    if (newInput) {
-      velocityRPM = inputVelocity;
-      // System.out.println("New Velocity: " + velocityRPM);
-      newInput = false;
-    } else {
-      velocityRPM = 0.0;
-      // System.out.println("Reset Velocity: " + velocityRPM);
-    }
+    // The current limit caps the torque, which at a given speed caps the voltage
+    double motorVelocityRadsPerSec = sim.getAngularVelocityRadPerSec() * GEARING;
+    double maxTorque = GEARBOX.getTorque(maxAmps);
+    appliedVolts =
+        MathUtil.clamp(
+            volts,
+            GEARBOX.getVoltage(-maxTorque, motorVelocityRadsPerSec),
+            GEARBOX.getVoltage(maxTorque, motorVelocityRadsPerSec));
+
+    sim.setInputVoltage(appliedVolts);
+    sim.update(0.02);
+    SimBattery.setCurrent(batterySource, sim.getCurrentDrawAmps());
   }
 
   @Override
@@ -38,4 +69,13 @@ public class IntakeWheelIOSim implements IntakeWheelIO {
     // TODO Auto-generated method stub
 
   }
+
+  @Override
+  public void updateInputs(IntakeWheelIOInputs inputs) {
+    inputs.positionRads = sim.getAngularPositionRad();
+    inputs.velocityRadsPerSec = sim.getAngularVelocityRadPerSec();
+    inputs.appliedVoltage = appliedVolts;
+    inputs.outputCurrentAmps = Math.abs(sim.getCurrentDrawAmps());
+    inputs.tempCelsius = TEMP_CELSIUS;
+  }
 }
@@ -8,12 +8,19 @@ import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.util.ExtenderConstraints;
 import frc.robot.util.LoggedTunableNumber;
+import frc.robot.util.LoopProfiler;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.AutoLogOutput;
 import org.littletonrobotics.junction.Logger;
 
 public class Pivot extends SubsystemBase {
 
+  private static final LoopProfiler.Section periodicTiming = LoopProfiler.section("Pivot/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Pivot/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Pivot/ProcessInputs");
+
   private LoggedTunableNumber maxAmps = new LoggedTunableNumber("Pivot/Max Amps", 40.0);
   private LoggedTunableNumber maxSpeedUp = new LoggedTunableNumber("Pivot/Max Speed Up", 1.0);
   private LoggedTunableNumber maxSpeedDown = new LoggedTunableNumber("Pivot/Max Speed Down", 1);
@@ -59,16 +66,23 @@ public class Pivot extends SubsystemBase {
   }
 
   public void periodic() {
+    periodicTiming.start();
+    updateInputsTiming.start();
     io.updateInputs(inputs);
+    updateInputsTiming.stop();
     io.periodic();
     Logger.recordOutput(
         "Pivot/CurrentCommand",
         getCurrentCommand() != null ? getCurrentCommand().getName() : "None");
+    processInputsTiming.start();
     Logger.processInputs("Pivot", inputs);
+    processInputsTiming.stop();
 
     io.setMaxAmps((int) maxAmps.get());
     io.setInverted(motorScaleFactor.get() < 0.0);
     io.setEncoderOffset(angleOffsetRads.get());
+
+    periodicTiming.stop();
   }
 
   public void setVelocity(double velocity) {
@@ -88,7 +102,11 @@ public class Pivot extends SubsystemBase {
   public void goToAngle(double degreesFromVertical) {
     Logger.recordOutput("Pivot/TargetDegreesFromVertical", degreesFromVertical);
 
-    pid.setPID(kP.get(), kI.get(), kD.get());
+    // Not short-circuited, so every gain records that it was seen
+    int id = hashCode();
+    if (kP.hasChanged(id) | kI.hasChanged(id) | kD.hasChanged(id)) {
+      pid.setPID(kP.get(), kI.get(), kD.get());
+    }
 
     var setpoint =
         MathUtil.clamp(degreesFromVerticalToRadians(degreesFromVertical), 0, maxAngleRads.get());
@@ -117,19 +135,16 @@ public class Pivot extends SubsystemBase {
 
     return Commands.run(
             () -> {
-              var constraint =
-                  extenderConstraints.getAngleConstraint(inchesFromGround.getAsDouble());
+              double height = inchesFromGround.getAsDouble();
+              double minAngle = extenderConstraints.getMinDegreesFromVertical(height);
+              double maxAngle = extenderConstraints.getMaxDegreesFromVertical(height);
 
-              Logger.recordOutput("Pivot/MinAngle", constraint.minDegreesFromVertical());
-              Logger.recordOutput("Pivot/MaxAngle", constraint.maxDegreesFromVertical());
+              Logger.recordOutput("Pivot/MinAngle", minAngle);
+              Logger.recordOutput("Pivot/MaxAngle", maxAngle);
               Logger.recordOutput("Pivot/TargetAngle", targetDegreesFromVertical.getAsDouble());
 
               var pivotAngle = targetDegreesFromVertical.getAsDouble();
-              var clampedAngle =
-                  MathUtil.clamp(
-                      pivotAngle,
-                      constraint.minDegreesFromVertical(),
-                      constraint.maxDegreesFromVertical());
+              var clampedAngle = MathUtil.clamp(pivotAngle, minAngle, maxAngle);
               this.goToAngle(clampedAngle);
             },
             this)
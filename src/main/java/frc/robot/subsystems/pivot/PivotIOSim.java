@@ -1,26 +1,110 @@
 package frc.robot.subsystems.pivot;
 
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.simulation.SingleJointedArmSim;
+import frc.robot.SimBattery;
+import frc.robot.SimVariation;
+
+/**
+ * Physics sim implementation of pivot IO. The end effector is simulated with {@link
+ * SingleJointedArmSim}, including gravity, the hard stops and the current limit, and is stepped
+ * several times per loop. The motor runs off the shared {@link SimBattery}.
+ *
+ * <p>The arm sim measures angles up from horizontal, while the pivot measures them from where it is
+ * up, with positive angles swinging the end effector down. Positions are converted between the two.
+ */
 public class PivotIOSim implements PivotIO {
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  public static final double DEFAULT_SUBSTEP_SECONDS = 0.001;
+
+  private static final DCMotor GEARBOX = DCMotor.getNEO(1);
+  private static final double GEARING = 60.0;
+  private static final double ARM_LENGTH_METERS = 0.35;
+  private static final double ARM_MASS_KG = 2.5;
+
+  // The arm's angle from horizontal when the pivot is up, which is 10 degrees from vertical
+  // (Pivot/DegreeAngleWhenUp)
+  private static final double UP_ANGLE_RADS = Math.toRadians(80);
+  private static final double MIN_PIVOT_RADS = -0.05;
+  private static final double MAX_PIVOT_RADS = 2.0;
+
+  // Motor heating isn't simulated
+  private static final double TEMP_CELSIUS = 25.0;
 
-  private double positionRads = 0.0;
-  private double velocityRadsPerSec = 0.0;
+  private final SingleJointedArmSim sim =
+      new SingleJointedArmSim(
+          GEARBOX,
+          GEARING,
+          SingleJointedArmSim.estimateMOI(ARM_LENGTH_METERS, ARM_MASS_KG),
+          ARM_LENGTH_METERS,
+          UP_ANGLE_RADS - MAX_PIVOT_RADS,
+          UP_ANGLE_RADS - MIN_PIVOT_RADS,
+          true,
+          UP_ANGLE_RADS);
+  private final int substeps;
+  private final double substepSeconds;
+  private final int batterySource = SimBattery.addSource("Pivot");
 
+  private double dutyCycle = 0.0;
+  private double maxAmps = 40;
+  private double appliedVolts = 0.0;
+
+  public PivotIOSim() {
+    this(DEFAULT_SUBSTEP_SECONDS);
+  }
+
+  /**
+   * Creates a new PivotIOSim.
+   *
+   * @param substepSeconds How often the physics is updated. Rounded so a whole number of substeps
+   *     fits in each loop.
+   */
+  public PivotIOSim(double substepSeconds) {
+    substeps = Math.max(1, (int) Math.round(LOOP_PERIOD_SECONDS / substepSeconds));
+    this.substepSeconds = LOOP_PERIOD_SECONDS / substeps;
+  }
+
+  @Override
   public void periodic() {
-    positionRads += velocityRadsPerSec * 0.02; // Simulate 20ms periodic update
+    double totalCurrentAmps = 0.0;
+    for (int i = 0; i < substeps; i++) {
+      double batteryVolts = SimBattery.getAvailableVoltage();
+      double volts = MathUtil.clamp(dutyCycle, -1, 1) * batteryVolts;
+
+      // The current limit caps the torque, which at a given speed caps the voltage
+      double motorVelocityRadsPerSec = getVelocityRadsPerSec() * GEARING;
+      double maxTorque = GEARBOX.getTorque(maxAmps);
+      appliedVolts =
+          MathUtil.clamp(
+              volts,
+              GEARBOX.getVoltage(-maxTorque, motorVelocityRadsPerSec),
+              GEARBOX.getVoltage(maxTorque, motorVelocityRadsPerSec));
+
+      // Positive voltage moves the pivot down, which is toward horizontal in the arm sim
+      sim.setInputVoltage(-appliedVolts * SimVariation.mechanismSpeedScale);
+      sim.update(substepSeconds);
+      totalCurrentAmps += Math.abs(sim.getCurrentDrawAmps());
+    }
+    SimBattery.setCurrent(batterySource, totalCurrentAmps / substeps);
+  }
+
+  private double getVelocityRadsPerSec() {
+    return -sim.getVelocityRadPerSec();
   }
 
   @Override
   public void updateInputs(PivotIOInputs inputs) {
-    inputs.positionRads = positionRads;
-    inputs.velocityRadsPerSec = velocityRadsPerSec;
-    inputs.appliedVoltage = 0.0; // No voltage in simulation
-    inputs.outputCurrentAmps = 0.0; // No current in simulation
-    inputs.tempCelsius = 0.0; // No temperature in simulation
+    inputs.positionRads = getPositionRads();
+    inputs.velocityRadsPerSec = getVelocityRadsPerSec();
+    inputs.appliedVoltage = appliedVolts;
+    inputs.outputCurrentAmps = Math.abs(sim.getCurrentDrawAmps());
+    inputs.tempCelsius = TEMP_CELSIUS;
   }
 
   @Override
   public void setMaxAmps(int maxAmps) {
-    // No-op for simulation
+    this.maxAmps = maxAmps;
   }
 
   @Override
@@ -30,16 +114,16 @@ public class PivotIOSim implements PivotIO {
 
   @Override
   public void setVelocity(double normalizedVelocity) {
-    this.velocityRadsPerSec = normalizedVelocity * 100;
+    dutyCycle = normalizedVelocity;
   }
 
   @Override
   public double getPositionRads() {
-    return positionRads;
+    return UP_ANGLE_RADS - sim.getAngleRads();
   }
 
   @Override
   public void zeroEncoder() {
-    positionRads = 0.0;
+    // No-op because the encoder is absolute
   }
 }
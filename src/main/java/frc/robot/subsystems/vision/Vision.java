@@ -20,7 +20,6 @@ import edu.wpi.first.math.VecBuilder;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
-import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.wpilibj.Alert;
@@ -29,15 +28,73 @@ import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.subsystems.drive.Drive;
 import frc.robot.subsystems.vision.VisionIO.PoseObservationType;
 import frc.robot.subsystems.vision.VisionIO.TagObservation;
-import java.util.LinkedList;
-import java.util.List;
+import frc.robot.util.LoggedStructArray;
+import frc.robot.util.LoopProfiler;
 import java.util.Optional;
 import org.littletonrobotics.junction.Logger;
 
 public class Vision extends SubsystemBase {
+  private static final LoopProfiler.Section periodicTiming =
+      LoopProfiler.section("Vision/Periodic");
+  private static final LoopProfiler.Section updateInputsTiming =
+      LoopProfiler.section("Vision/UpdateInputs");
+  private static final LoopProfiler.Section processInputsTiming =
+      LoopProfiler.section("Vision/ProcessInputs");
+
+  // Enough for every tag on the field, so the buffers don't have to grow
+  private static final int TAG_CAPACITY = 22;
+  private static final int OBSERVATION_CAPACITY = 8;
+
+  /** Pose arrays logged every cycle, either for one camera or for the summary. */
+  private static class PoseOutputs {
+    private final LoggedStructArray<Pose3d> tagPoses;
+    private final LoggedStructArray<Pose3d> robotPoses;
+    private final LoggedStructArray<Pose3d> robotPosesAccepted;
+    private final LoggedStructArray<Pose3d> robotPosesRejected;
+
+    private PoseOutputs(String prefix, int capacityScale) {
+      tagPoses =
+          new LoggedStructArray<>(
+              prefix + "/TagPoses", Pose3d[]::new, TAG_CAPACITY * capacityScale);
+      robotPoses =
+          new LoggedStructArray<>(
+              prefix + "/RobotPoses", Pose3d[]::new, OBSERVATION_CAPACITY * capacityScale);
+      robotPosesAccepted =
+          new LoggedStructArray<>(
+              prefix + "/RobotPosesAccepted", Pose3d[]::new, OBSERVATION_CAPACITY * capacityScale);
+      robotPosesRejected =
+          new LoggedStructArray<>(
+              prefix + "/RobotPosesRejected", Pose3d[]::new, OBSERVATION_CAPACITY * capacityScale);
+    }
+
+    private void clear() {
+      tagPoses.clear();
+      robotPoses.clear();
+      robotPosesAccepted.clear();
+      robotPosesRejected.clear();
+    }
+
+    private void addAll(PoseOutputs other) {
+      tagPoses.addAll(other.tagPoses);
+      robotPoses.addAll(other.robotPoses);
+      robotPosesAccepted.addAll(other.robotPosesAccepted);
+      robotPosesRejected.addAll(other.robotPosesRejected);
+    }
+
+    private void record() {
+      tagPoses.record();
+      robotPoses.record();
+      robotPosesAccepted.record();
+      robotPosesRejected.record();
+    }
+  }
+
   private final VisionConsumer consumer;
   private final VisionIO[] io;
   private final VisionIOInputsAutoLogged[] inputs;
+  private final String[] inputsKeys;
+  private final PoseOutputs[] cameraOutputs;
+  private final PoseOutputs summaryOutputs;
   private final Alert[] disconnectedAlerts;
   private final Drive drive;
 
@@ -47,11 +104,16 @@ public class Vision extends SubsystemBase {
     this.consumer = consumer;
     this.io = io;
 
-    // Initialize inputs
+    // Initialize inputs and outputs, with every log key built once
     this.inputs = new VisionIOInputsAutoLogged[io.length];
+    this.inputsKeys = new String[io.length];
+    this.cameraOutputs = new PoseOutputs[io.length];
     for (int i = 0; i < inputs.length; i++) {
       inputs[i] = new VisionIOInputsAutoLogged();
+      inputsKeys[i] = "Vision/Camera" + Integer.toString(i);
+      cameraOutputs[i] = new PoseOutputs(inputsKeys[i], 1);
     }
+    this.summaryOutputs = new PoseOutputs("Vision/Summary", io.length);
 
     // Initialize disconnected alerts
     this.disconnectedAlerts = new Alert[io.length];
@@ -75,34 +137,37 @@ public class Vision extends SubsystemBase {
 
     // Find the nearest reef tag
     double nearestDistance = Double.POSITIVE_INFINITY;
-    TagObservation nearestTagObservation = null;
+    Pose2d nearestTagOffset = null;
+    int nearestTagId = 0;
 
     for (int cameraIndex = 0; cameraIndex < io.length; cameraIndex++) {
-      for (var tagObservation : inputs[cameraIndex].tagObservations) {
-        if (VisionConstants.reefTags.contains(tagObservation.tagId())) {
-          var distance =
-              tagObservation.tagOffset().getTranslation().getDistance(Translation2d.kZero);
+      var cameraInputs = inputs[cameraIndex];
+      for (int i = 0; i < cameraInputs.tagOffsets.length; i++) {
+        if (VisionConstants.reefTags.contains(cameraInputs.tagOffsetIds[i])) {
+          var distance = cameraInputs.tagOffsets[i].getTranslation().getNorm();
 
           if (distance < nearestDistance) {
             nearestDistance = distance;
-            nearestTagObservation = tagObservation;
+            nearestTagOffset = cameraInputs.tagOffsets[i];
+            nearestTagId = cameraInputs.tagOffsetIds[i];
           }
         }
       }
     }
 
-    if (nearestTagObservation == null) {
+    if (nearestTagOffset == null) {
       return Optional.empty();
     }
 
-    return Optional.of(nearestTagObservation);
+    return Optional.of(new TagObservation(nearestTagOffset, nearestTagId));
   }
 
   public Optional<TagObservation> getTagObservation(int tagId) {
     for (int cameraIndex = 0; cameraIndex < io.length; cameraIndex++) {
-      for (var tagObservation : inputs[cameraIndex].tagObservations) {
-        if (tagObservation.tagId() == tagId) {
-          return Optional.of(tagObservation);
+      var cameraInputs = inputs[cameraIndex];
+      for (int i = 0; i < cameraInputs.tagOffsets.length; i++) {
+        if (cameraInputs.tagOffsetIds[i] == tagId) {
+          return Optional.of(new TagObservation(cameraInputs.tagOffsets[i], tagId));
         }
       }
     }
@@ -111,9 +176,14 @@ public class Vision extends SubsystemBase {
 
   @Override
   public void periodic() {
+    periodicTiming.start();
     for (int i = 0; i < io.length; i++) {
+      updateInputsTiming.start();
       io[i].updateInputs(inputs[i]);
-      Logger.processInputs("Vision/Camera" + Integer.toString(i), inputs[i]);
+      updateInputsTiming.stop();
+      processInputsTiming.start();
+      Logger.processInputs(inputsKeys[i], inputs[i]);
+      processInputsTiming.stop();
     }
 
     var reefTagPose = getNearestTagObservation();
@@ -136,10 +206,7 @@ public class Vision extends SubsystemBase {
     }
 
     // Initialize logging values
-    List<Pose3d> allTagPoses = new LinkedList<>();
-    List<Pose3d> allRobotPoses = new LinkedList<>();
-    List<Pose3d> allRobotPosesAccepted = new LinkedList<>();
-    List<Pose3d> allRobotPosesRejected = new LinkedList<>();
+    summaryOutputs.clear();
 
     // Loop over cameras
     for (int cameraIndex = 0; cameraIndex < io.length; cameraIndex++) {
@@ -147,41 +214,42 @@ public class Vision extends SubsystemBase {
       disconnectedAlerts[cameraIndex].set(inputs[cameraIndex].connected);
 
       // Initialize logging values
-      List<Pose3d> tagPoses = new LinkedList<>();
-      List<Pose3d> robotPoses = new LinkedList<>();
-      List<Pose3d> robotPosesAccepted = new LinkedList<>();
-      List<Pose3d> robotPosesRejected = new LinkedList<>();
+      var outputs = cameraOutputs[cameraIndex];
+      outputs.clear();
 
       // Add tag poses
       for (int tagId : inputs[cameraIndex].tagIds) {
         var tagPose = aprilTagLayout.getTagPose(tagId);
         if (tagPose.isPresent()) {
-          tagPoses.add(tagPose.get());
+          outputs.tagPoses.add(tagPose.get());
         }
       }
 
       // Loop over pose observations
-      for (var observation : inputs[cameraIndex].poseObservations) {
+      var cameraInputs = inputs[cameraIndex];
+      for (int i = 0; i < cameraInputs.poses.length; i++) {
+        var pose = cameraInputs.poses[i];
+        int tagCount = cameraInputs.poseTagCounts[i];
+
         // Check whether to reject pose
         boolean rejectPose =
-            observation.tagCount() == 0 // Must have at least one tag
-                || (observation.tagCount() == 1
-                    && observation.ambiguity() > maxAmbiguity) // Cannot be high ambiguity
-                || Math.abs(observation.pose().getZ())
-                    > maxZError // Must have realistic Z coordinate
+            tagCount == 0 // Must have at least one tag
+                || (tagCount == 1
+                    && cameraInputs.poseAmbiguities[i] > maxAmbiguity) // Cannot be high ambiguity
+                || Math.abs(pose.getZ()) > maxZError // Must have realistic Z coordinate
 
                 // Must be within the field boundaries
-                || observation.pose().getX() < 0.0
-                || observation.pose().getX() > aprilTagLayout.getFieldLength()
-                || observation.pose().getY() < 0.0
-                || observation.pose().getY() > aprilTagLayout.getFieldWidth();
+                || pose.getX() < 0.0
+                || pose.getX() > aprilTagLayout.getFieldLength()
+                || pose.getY() < 0.0
+                || pose.getY() > aprilTagLayout.getFieldWidth();
 
         // Add pose to log
-        robotPoses.add(observation.pose());
+        outputs.robotPoses.add(pose);
         if (rejectPose) {
-          robotPosesRejected.add(observation.pose());
+          outputs.robotPosesRejected.add(pose);
         } else {
-          robotPosesAccepted.add(observation.pose());
+          outputs.robotPosesAccepted.add(pose);
         }
 
         // Skip if rejected
@@ -190,11 +258,10 @@ public class Vision extends SubsystemBase {
         }
 
         // Calculate standard deviations
-        double stdDevFactor =
-            Math.pow(observation.averageTagDistance(), 2.0) / observation.tagCount();
+        double stdDevFactor = Math.pow(cameraInputs.poseAverageTagDistances[i], 2.0) / tagCount;
         double linearStdDev = linearStdDevBaseline * stdDevFactor;
         double angularStdDev = angularStdDevBaseline * stdDevFactor;
-        if (observation.type() == PoseObservationType.MEGATAG_2) {
+        if (cameraInputs.poseTypes[i] == PoseObservationType.MEGATAG_2.ordinal()) {
           linearStdDev *= linearStdDevMegatag2Factor;
           angularStdDev *= angularStdDevMegatag2Factor;
         }
@@ -205,41 +272,20 @@ public class Vision extends SubsystemBase {
 
         // Send vision observation
         consumer.accept(
-            observation.pose().toPose2d(),
-            observation.timestamp(),
+            pose.toPose2d(),
+            cameraInputs.poseTimestamps[i],
             VecBuilder.fill(linearStdDev, linearStdDev, angularStdDev));
       }
 
       // Log camera datadata
-      Logger.recordOutput(
-          "Vision/Camera" + Integer.toString(cameraIndex) + "/TagPoses",
-          tagPoses.toArray(new Pose3d[tagPoses.size()]));
-      Logger.recordOutput(
-          "Vision/Camera" + Integer.toString(cameraIndex) + "/RobotPoses",
-          robotPoses.toArray(new Pose3d[robotPoses.size()]));
-      Logger.recordOutput(
-          "Vision/Camera" + Integer.toString(cameraIndex) + "/RobotPosesAccepted",
-          robotPosesAccepted.toArray(new Pose3d[robotPosesAccepted.size()]));
-      Logger.recordOutput(
-          "Vision/Camera" + Integer.toString(cameraIndex) + "/RobotPosesRejected",
-          robotPosesRejected.toArray(new Pose3d[robotPosesRejected.size()]));
-      allTagPoses.addAll(tagPoses);
-      allRobotPoses.addAll(robotPoses);
-      allRobotPosesAccepted.addAll(robotPosesAccepted);
-      allRobotPosesRejected.addAll(robotPosesRejected);
+      outputs.record();
+      summaryOutputs.addAll(outputs);
     }
 
     // Log summary data
-    Logger.recordOutput(
-        "Vision/Summary/TagPoses", allTagPoses.toArray(new Pose3d[allTagPoses.size()]));
-    Logger.recordOutput(
-        "Vision/Summary/RobotPoses", allRobotPoses.toArray(new Pose3d[allRobotPoses.size()]));
-    Logger.recordOutput(
-        "Vision/Summary/RobotPosesAccepted",
-        allRobotPosesAccepted.toArray(new Pose3d[allRobotPosesAccepted.size()]));
-    Logger.recordOutput(
-        "Vision/Summary/RobotPosesRejected",
-        allRobotPosesRejected.toArray(new Pose3d[allRobotPosesRejected.size()]));
+    summaryOutputs.record();
+
+    periodicTiming.stop();
   }
 
   @FunctionalInterface
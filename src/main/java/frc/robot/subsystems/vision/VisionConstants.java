@@ -47,6 +47,9 @@ public class VisionConstants {
           Units.inchesToMeters(8.046),
           new Rotation3d(0, Math.toRadians(5), 0));
 
+  // Poll each camera on its own background thread instead of in Vision.periodic (real robot only)
+  public static boolean useVisionThreads = false;
+
   // Basic filtering thresholds
   public static double maxAmbiguity = 0.3;
   public static double maxZError = 0.75;
@@ -6,14 +6,31 @@ import edu.wpi.first.math.geometry.Rotation2d;
 import org.littletonrobotics.junction.AutoLog;
 
 public interface VisionIO {
+  /**
+   * Observations are packed into parallel arrays, with one entry per observation, instead of arrays
+   * of records. Poses are logged with their WPILib structs and everything else as primitive arrays,
+   * which is much cheaper to log and replay than records.
+   */
   @AutoLog
   public static class VisionIOInputs {
     public boolean connected = false;
     public TargetObservation latestTargetObservation =
         new TargetObservation(new Rotation2d(), new Rotation2d());
-    public PoseObservation[] poseObservations = new PoseObservation[0];
+
+    // Robot pose samples used for pose estimation
+    public double[] poseTimestamps = new double[0];
+    public Pose3d[] poses = new Pose3d[0];
+    public double[] poseAmbiguities = new double[0];
+    public int[] poseTagCounts = new int[0];
+    public double[] poseAverageTagDistances = new double[0];
+    public int[] poseTypes = new int[0]; // PoseObservationType ordinals
+
+    // IDs of the tags used for the pose samples, without duplicates
     public int[] tagIds = new int[0];
-    public TagObservation[] tagObservations = new TagObservation[0];
+
+    // Robot relative offsets of every tag seen
+    public Pose2d[] tagOffsets = new Pose2d[0];
+    public int[] tagOffsetIds = new int[0];
   }
 
   public static record TagObservation(Pose2d tagOffset, int tagId) {}
@@ -21,19 +38,16 @@ public interface VisionIO {
   /** Represents the angle to a simple target, not used for pose estimation. */
   public static record TargetObservation(Rotation2d tx, Rotation2d ty) {}
 
-  /** Represents a robot pose sample used for pose estimation. */
-  public static record PoseObservation(
-      double timestamp,
-      Pose3d pose,
-      double ambiguity,
-      int tagCount,
-      double averageTagDistance,
-      PoseObservationType type) {}
-
   public static enum PoseObservationType {
     MEGATAG_1,
     MEGATAG_2,
-    PHOTONVISION
+    PHOTONVISION;
+
+    private static final PoseObservationType[] values = values();
+
+    public static PoseObservationType fromOrdinal(int ordinal) {
+      return values[ordinal];
+    }
   }
 
   public default void updateInputs(VisionIOInputs inputs) {}
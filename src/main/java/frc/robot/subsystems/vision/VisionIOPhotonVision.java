@@ -19,16 +19,13 @@ import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Transform3d;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
 import org.photonvision.PhotonCamera;
 
 /** IO implementation for real PhotonVision hardware. */
 public class VisionIOPhotonVision implements VisionIO {
   protected final PhotonCamera camera;
   protected final Transform3d robotToCamera;
+  private final VisionObservationBuffer observations = new VisionObservationBuffer();
 
   /**
    * Creates a new VisionIOPhotonVision.
@@ -46,11 +43,7 @@ public class VisionIOPhotonVision implements VisionIO {
     inputs.connected = camera.isConnected();
 
     // Read new camera observations
-    Set<Short> tagIds = new HashSet<>();
-    List<PoseObservation> poseObservations = new LinkedList<>();
-
-    List<TagObservation> tagObservations = new LinkedList<>();
-
+    observations.clear();
     for (var result : camera.getAllUnreadResults()) {
 
       // Update latest target observation
@@ -65,13 +58,12 @@ public class VisionIOPhotonVision implements VisionIO {
 
           var tagOffset = this.robotToCamera.plus(target.getBestCameraToTarget());
 
-          tagObservations.add(
-              new TagObservation(
-                  new Pose2d(
-                      tagOffset.getTranslation().getX(),
-                      tagOffset.getTranslation().getY(),
-                      tagOffset.getRotation().toRotation2d()),
-                  target.fiducialId));
+          observations.addTagOffset(
+              new Pose2d(
+                  tagOffset.getTranslation().getX(),
+                  tagOffset.getTranslation().getY(),
+                  tagOffset.getRotation().toRotation2d()),
+              target.fiducialId);
         }
       } else {
         inputs.latestTargetObservation = new TargetObservation(new Rotation2d(), new Rotation2d());
@@ -93,17 +85,18 @@ public class VisionIOPhotonVision implements VisionIO {
         }
 
         // Add tag IDs
-        tagIds.addAll(multitagResult.fiducialIDsUsed);
+        for (short id : multitagResult.fiducialIDsUsed) {
+          observations.addTagId(id);
+        }
 
         // Add observation
-        poseObservations.add(
-            new PoseObservation(
-                result.getTimestampSeconds(), // Timestamp
-                robotPose, // 3D pose estimate
-                multitagResult.estimatedPose.ambiguity, // Ambiguity
-                multitagResult.fiducialIDsUsed.size(), // Tag count
-                totalTagDistance / result.targets.size(), // Average tag distance
-                PoseObservationType.PHOTONVISION)); // Observation type
+        observations.addPoseObservation(
+            result.getTimestampSeconds(), // Timestamp
+            robotPose, // 3D pose estimate
+            multitagResult.estimatedPose.ambiguity, // Ambiguity
+            multitagResult.fiducialIDsUsed.size(), // Tag count
+            totalTagDistance / result.targets.size(), // Average tag distance
+            PoseObservationType.PHOTONVISION); // Observation type
 
       } else if (!result.targets.isEmpty()) { // Single tag result
         var target = result.targets.get(0);
@@ -119,38 +112,21 @@ public class VisionIOPhotonVision implements VisionIO {
           Pose3d robotPose = new Pose3d(fieldToRobot.getTranslation(), fieldToRobot.getRotation());
 
           // Add tag ID
-          tagIds.add((short) target.fiducialId);
+          observations.addTagId(target.fiducialId);
 
           // Add observation
-          poseObservations.add(
-              new PoseObservation(
-                  result.getTimestampSeconds(), // Timestamp
-                  robotPose, // 3D pose estimate
-                  target.poseAmbiguity, // Ambiguity
-                  1, // Tag count
-                  cameraToTarget.getTranslation().getNorm(), // Average tag distance
-                  PoseObservationType.PHOTONVISION)); // Observation type
+          observations.addPoseObservation(
+              result.getTimestampSeconds(), // Timestamp
+              robotPose, // 3D pose estimate
+              target.poseAmbiguity, // Ambiguity
+              1, // Tag count
+              cameraToTarget.getTranslation().getNorm(), // Average tag distance
+              PoseObservationType.PHOTONVISION); // Observation type
         }
       }
     }
 
-    // Save pose observations to inputs object
-    inputs.poseObservations = new PoseObservation[poseObservations.size()];
-    for (int i = 0; i < poseObservations.size(); i++) {
-      inputs.poseObservations[i] = poseObservations.get(i);
-    }
-
-    // Save tag IDs to inputs objects
-    inputs.tagIds = new int[tagIds.size()];
-    int i = 0;
-    for (int id : tagIds) {
-      inputs.tagIds[i++] = id;
-    }
-
-    // Save tag observations to inputs object
-    inputs.tagObservations = new TagObservation[tagObservations.size()];
-    for (int j = 0; j < tagObservations.size(); j++) {
-      inputs.tagObservations[j] = tagObservations.get(j);
-    }
+    // Save observations to inputs object
+    observations.copyTo(inputs);
   }
 }
@@ -4,6 +4,7 @@ import static frc.robot.subsystems.vision.VisionConstants.aprilTagLayout;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Transform3d;
+import frc.robot.SimVariation;
 import java.util.function.Supplier;
 import org.photonvision.simulation.PhotonCameraSim;
 import org.photonvision.simulation.SimCameraProperties;
@@ -14,6 +15,7 @@ public class VisionIOPhotonVisionSim extends VisionIOPhotonVision {
   private static VisionSystemSim visionSim;
 
   private final Supplier<Pose2d> poseSupplier;
+  private final SimCameraProperties cameraProperties;
   private final PhotonCameraSim cameraSim;
 
   /**
@@ -34,13 +36,15 @@ public class VisionIOPhotonVisionSim extends VisionIOPhotonVision {
     }
 
     // Add sim camera
-    var cameraProperties = new SimCameraProperties();
+    cameraProperties = new SimCameraProperties();
     cameraSim = new PhotonCameraSim(camera, cameraProperties, aprilTagLayout);
     visionSim.addCamera(cameraSim, robotToCamera);
   }
 
   @Override
   public void updateInputs(VisionIOInputs inputs) {
+    cameraProperties.setCalibError(
+        SimVariation.visionCalibErrorPixels, SimVariation.visionCalibErrorStdDevPixels);
     visionSim.update(poseSupplier.get());
     super.updateInputs(inputs);
   }
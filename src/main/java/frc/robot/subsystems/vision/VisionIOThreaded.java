@@ -0,0 +1,95 @@
+package frc.robot.subsystems.vision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Wraps another vision IO implementation and polls it on a dedicated background thread, so camera
+ * reads and the per-target transform math run off the main loop.
+ *
+ * <p>The worker hands each poll that produced observations to the main loop through a bounded
+ * queue, dropping the oldest poll if the main loop falls behind. {@link #updateInputs} only drains
+ * that queue and merges the polls into one batch. Because the merged batch is what gets passed to
+ * {@code Logger.processInputs}, log replay sees exactly what the main loop saw, and the rejection
+ * and standard deviation logic in {@link Vision} can still be replayed.
+ */
+public class VisionIOThreaded implements VisionIO {
+  private static final int QUEUE_CAPACITY = 16;
+  private static final long POLL_PERIOD_MS = 5;
+
+  private final VisionIO io;
+  private final ArrayBlockingQueue<VisionIOInputs> polls = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final List<VisionIOInputs> drainedPolls = new ArrayList<>(QUEUE_CAPACITY);
+  private final VisionObservationBuffer merged = new VisionObservationBuffer();
+
+  // Latest values from the worker, which persist between polls
+  private volatile boolean connected = false;
+  private volatile TargetObservation latestTargetObservation = null;
+
+  /**
+   * Creates a new VisionIOThreaded and starts its worker thread.
+   *
+   * @param io The IO implementation to poll. Must only be used by this wrapper afterwards.
+   * @param name The name of the worker thread.
+   */
+  public VisionIOThreaded(VisionIO io, String name) {
+    this.io = io;
+    Thread worker = new Thread(this::run, name);
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  private void run() {
+    VisionIOInputs workerInputs = new VisionIOInputs();
+    while (true) {
+      io.updateInputs(workerInputs);
+      connected = workerInputs.connected;
+      latestTargetObservation = workerInputs.latestTargetObservation;
+
+      // The IO replaces the arrays on every update, so they can be handed off without copying
+      if (workerInputs.poseTimestamps.length > 0
+          || workerInputs.tagOffsets.length > 0
+          || workerInputs.tagIds.length > 0) {
+        VisionIOInputs poll = new VisionIOInputs();
+        poll.poseTimestamps = workerInputs.poseTimestamps;
+        poll.poses = workerInputs.poses;
+        poll.poseAmbiguities = workerInputs.poseAmbiguities;
+        poll.poseTagCounts = workerInputs.poseTagCounts;
+        poll.poseAverageTagDistances = workerInputs.poseAverageTagDistances;
+        poll.poseTypes = workerInputs.poseTypes;
+        poll.tagIds = workerInputs.tagIds;
+        poll.tagOffsets = workerInputs.tagOffsets;
+        poll.tagOffsetIds = workerInputs.tagOffsetIds;
+        while (!polls.offer(poll)) {
+          polls.poll(); // Drop the oldest poll
+        }
+      }
+
+      try {
+        Thread.sleep(POLL_PERIOD_MS);
+      } catch (InterruptedException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+  @Override
+  public void updateInputs(VisionIOInputs inputs) {
+    inputs.connected = connected;
+    TargetObservation target = latestTargetObservation;
+    if (target != null) {
+      inputs.latestTargetObservation = target;
+    }
+
+    drainedPolls.clear();
+    polls.drainTo(drainedPolls);
+
+    // Merge every poll since the last cycle, oldest first
+    merged.clear();
+    for (VisionIOInputs poll : drainedPolls) {
+      merged.addAll(poll);
+    }
+    merged.copyTo(inputs);
+  }
+}
@@ -0,0 +1,138 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import frc.robot.subsystems.vision.VisionIO.PoseObservationType;
+import frc.robot.subsystems.vision.VisionIO.VisionIOInputs;
+import java.util.Arrays;
+
+/**
+ * Collects vision observations into fixed-capacity buffers that are reused every cycle, then
+ * copies them into the packed arrays of {@link VisionIOInputs}.
+ *
+ * <p>The input arrays themselves are new every cycle that has observations, since the logger keeps
+ * references to logged arrays until they are written. Cycles without observations reuse shared
+ * empty arrays. Observations past the capacity are dropped.
+ */
+class VisionObservationBuffer {
+  static final int POSE_CAPACITY = 64;
+  static final int TAG_CAPACITY = 128;
+
+  private static final double[] EMPTY_DOUBLES = new double[0];
+  private static final int[] EMPTY_INTS = new int[0];
+  private static final Pose3d[] EMPTY_POSE3DS = new Pose3d[0];
+  private static final Pose2d[] EMPTY_POSE2DS = new Pose2d[0];
+
+  private final double[] poseTimestamps = new double[POSE_CAPACITY];
+  private final Pose3d[] poses = new Pose3d[POSE_CAPACITY];
+  private final double[] poseAmbiguities = new double[POSE_CAPACITY];
+  private final int[] poseTagCounts = new int[POSE_CAPACITY];
+  private final double[] poseAverageTagDistances = new double[POSE_CAPACITY];
+  private final int[] poseTypes = new int[POSE_CAPACITY];
+  private int poseCount = 0;
+
+  private final int[] tagIds = new int[TAG_CAPACITY];
+  private int tagIdCount = 0;
+
+  private final Pose2d[] tagOffsets = new Pose2d[TAG_CAPACITY];
+  private final int[] tagOffsetIds = new int[TAG_CAPACITY];
+  private int tagOffsetCount = 0;
+
+  public void clear() {
+    poseCount = 0;
+    tagIdCount = 0;
+    tagOffsetCount = 0;
+  }
+
+  public boolean isEmpty() {
+    return poseCount == 0 && tagIdCount == 0 && tagOffsetCount == 0;
+  }
+
+  public void addPoseObservation(
+      double timestamp,
+      Pose3d pose,
+      double ambiguity,
+      int tagCount,
+      double averageTagDistance,
+      PoseObservationType type) {
+    if (poseCount == POSE_CAPACITY) {
+      return;
+    }
+    poseTimestamps[poseCount] = timestamp;
+    poses[poseCount] = pose;
+    poseAmbiguities[poseCount] = ambiguity;
+    poseTagCounts[poseCount] = tagCount;
+    poseAverageTagDistances[poseCount] = averageTagDistance;
+    poseTypes[poseCount] = type.ordinal();
+    poseCount++;
+  }
+
+  /** Adds a tag ID, unless it was already added. */
+  public void addTagId(int id) {
+    for (int i = 0; i < tagIdCount; i++) {
+      if (tagIds[i] == id) {
+        return;
+      }
+    }
+    if (tagIdCount < TAG_CAPACITY) {
+      tagIds[tagIdCount++] = id;
+    }
+  }
+
+  public void addTagOffset(Pose2d offset, int id) {
+    if (tagOffsetCount == TAG_CAPACITY) {
+      return;
+    }
+    tagOffsets[tagOffsetCount] = offset;
+    tagOffsetIds[tagOffsetCount] = id;
+    tagOffsetCount++;
+  }
+
+  /** Adds every observation in a set of inputs, after the ones already added. */
+  public void addAll(VisionIOInputs inputs) {
+    for (int i = 0; i < inputs.poseTimestamps.length; i++) {
+      addPoseObservation(
+          inputs.poseTimestamps[i],
+          inputs.poses[i],
+          inputs.poseAmbiguities[i],
+          inputs.poseTagCounts[i],
+          inputs.poseAverageTagDistances[i],
+          PoseObservationType.fromOrdinal(inputs.poseTypes[i]));
+    }
+    for (int id : inputs.tagIds) {
+      addTagId(id);
+    }
+    for (int i = 0; i < inputs.tagOffsets.length; i++) {
+      addTagOffset(inputs.tagOffsets[i], inputs.tagOffsetIds[i]);
+    }
+  }
+
+  /** Replaces the observations in a set of inputs with the ones in this buffer. */
+  public void copyTo(VisionIOInputs inputs) {
+    if (poseCount == 0) {
+      inputs.poseTimestamps = EMPTY_DOUBLES;
+      inputs.poses = EMPTY_POSE3DS;
+      inputs.poseAmbiguities = EMPTY_DOUBLES;
+      inputs.poseTagCounts = EMPTY_INTS;
+      inputs.poseAverageTagDistances = EMPTY_DOUBLES;
+      inputs.poseTypes = EMPTY_INTS;
+    } else {
+      inputs.poseTimestamps = Arrays.copyOf(poseTimestamps, poseCount);
+      inputs.poses = Arrays.copyOf(poses, poseCount);
+      inputs.poseAmbiguities = Arrays.copyOf(poseAmbiguities, poseCount);
+      inputs.poseTagCounts = Arrays.copyOf(poseTagCounts, poseCount);
+      inputs.poseAverageTagDistances = Arrays.copyOf(poseAverageTagDistances, poseCount);
+      inputs.poseTypes = Arrays.copyOf(poseTypes, poseCount);
+    }
+
+    inputs.tagIds = tagIdCount == 0 ? EMPTY_INTS : Arrays.copyOf(tagIds, tagIdCount);
+
+    if (tagOffsetCount == 0) {
+      inputs.tagOffsets = EMPTY_POSE2DS;
+      inputs.tagOffsetIds = EMPTY_INTS;
+    } else {
+      inputs.tagOffsets = Arrays.copyOf(tagOffsets, tagOffsetCount);
+      inputs.tagOffsetIds = Arrays.copyOf(tagOffsetIds, tagOffsetCount);
+    }
+  }
+}
@@ -4,14 +4,19 @@ import edu.wpi.first.wpilibj.Filesystem;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 
 public class ExtenderConstraints {
 
   public record AngleConstraint(
       double inchesFromGround, double minDegreesFromVertical, double maxDegreesFromVertical) {}
 
-  public static AngleConstraint[] angleConstraints;
+  // Evenly spaced table, so a lookup is index arithmetic instead of a search. Entry i is at
+  // firstInchesFromGround + i * inchesPerEntry. The arrays are never modified after loading.
+  private double firstInchesFromGround;
+  private double inchesPerEntry;
+  private double[] minDegreesFromVertical;
+  private double[] maxDegreesFromVertical;
 
   public ExtenderConstraints(String filename, double heightOfHighestConstraintInches) {
 
@@ -21,15 +26,31 @@ public class ExtenderConstraints {
   }
 
   public void loadTestConstraints() {
-    angleConstraints =
-        new AngleConstraint[] {
-          new AngleConstraint(0, 0, 0),
-          new AngleConstraint(12.5, 0, 0),
-          new AngleConstraint(25, 0, 0),
-          new AngleConstraint(35, 10, 20),
-          new AngleConstraint(45, 30, 40),
-          new AngleConstraint(75, 50, 60)
-        };
+    // The test constraints are not evenly spaced, so resample them onto a grid that contains every
+    // original row
+    double[] inchesFromGround = {0, 12.5, 25, 35, 45, 75};
+    double[] min = {0, 0, 0, 10, 30, 50};
+    double[] max = {0, 0, 0, 20, 40, 60};
+
+    double spacing = 2.5;
+    int numEntries = (int) Math.round(inchesFromGround[inchesFromGround.length - 1] / spacing) + 1;
+    double[] resampledMin = new double[numEntries];
+    double[] resampledMax = new double[numEntries];
+
+    int below = 0;
+    for (int i = 0; i < numEntries; i++) {
+      double inches = i * spacing;
+      while (below < inchesFromGround.length - 2 && inches > inchesFromGround[below + 1]) {
+        below++;
+      }
+      double percent =
+          (inches - inchesFromGround[below])
+              / (inchesFromGround[below + 1] - inchesFromGround[below]);
+      resampledMin[i] = min[below] + (min[below + 1] - min[below]) * percent;
+      resampledMax[i] = max[below] + (max[below + 1] - max[below]) * percent;
+    }
+
+    setTable(0, spacing, resampledMin, resampledMax);
   }
 
   public void loadConstraintsFromFile(String filepath, double heightOfHighestConstraintInches) {
@@ -37,9 +58,8 @@ public class ExtenderConstraints {
     try (BufferedReader br = new BufferedReader(new FileReader(filepath))) {
       String line;
 
-      int numLines = 0;
-      LinkedList<Double> maxList = new LinkedList<>();
-      LinkedList<Double> minList = new LinkedList<>();
+      ArrayList<Double> maxList = new ArrayList<>();
+      ArrayList<Double> minList = new ArrayList<>();
 
       while ((line = br.readLine()) != null) {
 
@@ -47,74 +67,89 @@ public class ExtenderConstraints {
 
         maxList.add(Double.parseDouble(parts[0]));
         minList.add(Double.parseDouble(parts[1]));
-
-        numLines += 1;
       }
 
-      angleConstraints = new AngleConstraint[numLines];
+      int numLines = maxList.size();
+      double[] min = new double[numLines];
+      double[] max = new double[numLines];
+      double spacing = heightOfHighestConstraintInches / numLines;
 
       for (int i = 0; i < numLines; i++) {
-        double inchesFromGround = (i + 1) * (heightOfHighestConstraintInches / numLines);
-        double minDegreesFromVertical = minList.get(i);
-        double maxDegreesFromVertical = maxList.get(i);
-
-        angleConstraints[i] =
-            new AngleConstraint(inchesFromGround, minDegreesFromVertical, maxDegreesFromVertical);
+        min[i] = minList.get(i);
+        max[i] = maxList.get(i);
 
         System.out.println(
             "Inches from ground: "
-                + inchesFromGround
+                + (i + 1) * spacing
                 + ", min degrees from vertical: "
-                + minDegreesFromVertical
+                + min[i]
                 + ", max degrees from vertical: "
-                + maxDegreesFromVertical);
+                + max[i]);
       }
 
-    } catch (IOException e) {
+      // Row i of the file is at (i + 1) * spacing inches from the ground
+      setTable(spacing, spacing, min, max);
+
+    } catch (IOException | RuntimeException e) {
       e.printStackTrace();
 
       loadTestConstraints();
     }
   }
 
-  public AngleConstraint getAngleConstraint(double inchesFromGround) {
-    if (inchesFromGround < angleConstraints[0].inchesFromGround) {
-      return angleConstraints[0];
-    } else if (inchesFromGround > angleConstraints[angleConstraints.length - 1].inchesFromGround) {
-      return angleConstraints[angleConstraints.length - 1];
+  private void setTable(double firstInches, double spacing, double[] min, double[] max) {
+    if (min.length == 0 || min.length != max.length || !(spacing > 0)) {
+      throw new IllegalArgumentException("Extender constraints table is empty or malformed");
     }
+    firstInchesFromGround = firstInches;
+    inchesPerEntry = spacing;
+    minDegreesFromVertical = min;
+    maxDegreesFromVertical = max;
+  }
 
-    var belowConstraint = angleConstraints[0];
-    var aboveConstraint = angleConstraints[0];
+  /** Returns the lowest allowed pivot angle at the given height, without allocating. */
+  public double getMinDegreesFromVertical(double inchesFromGround) {
+    return interpolate(minDegreesFromVertical, inchesFromGround);
+  }
 
-    for (int i = 0; i < angleConstraints.length; i++) {
-      if (angleConstraints[i].inchesFromGround > inchesFromGround) {
-        aboveConstraint = angleConstraints[i];
+  /** Returns the highest allowed pivot angle at the given height, without allocating. */
+  public double getMaxDegreesFromVertical(double inchesFromGround) {
+    return interpolate(maxDegreesFromVertical, inchesFromGround);
+  }
 
-        if (i > 0) {
-          belowConstraint = angleConstraints[i - 1];
-        } else {
-          belowConstraint = angleConstraints[i];
-        }
-        break;
-      }
-    }
+  private double interpolate(double[] table, double inchesFromGround) {
+    int last = table.length - 1;
+    double index = (inchesFromGround - firstInchesFromGround) / inchesPerEntry;
 
-    // Linear interpolation
-    var percent =
-        (inchesFromGround - belowConstraint.inchesFromGround)
-            / (aboveConstraint.inchesFromGround - belowConstraint.inchesFromGround);
+    // Clamp to the ends of the table (this also catches NaN)
+    if (!(index > 0)) {
+      return table[0];
+    } else if (index >= last) {
+      return table[last];
+    }
 
-    var minDegreesFromVertical =
-        belowConstraint.minDegreesFromVertical
-            + (aboveConstraint.minDegreesFromVertical - belowConstraint.minDegreesFromVertical)
-                * percent;
+    int below = (int) index;
+    double percent = index - below;
+    return table[below] + (table[below + 1] - table[below]) * percent;
+  }
 
-    var maxDegreesFromVertical =
-        belowConstraint.maxDegreesFromVertical
-            + (aboveConstraint.maxDegreesFromVertical - belowConstraint.maxDegreesFromVertical)
-                * percent;
+  public AngleConstraint getAngleConstraint(double inchesFromGround) {
+    return new AngleConstraint(
+        inchesFromGround,
+        getMinDegreesFromVertical(inchesFromGround),
+        getMaxDegreesFromVertical(inchesFromGround));
+  }
 
-    return new AngleConstraint(inchesFromGround, minDegreesFromVertical, maxDegreesFromVertical);
+  /** Returns a copy of every row in the table, for logging or debugging. */
+  public AngleConstraint[] getAngleConstraints() {
+    AngleConstraint[] snapshot = new AngleConstraint[minDegreesFromVertical.length];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] =
+          new AngleConstraint(
+              firstInchesFromGround + i * inchesPerEntry,
+              minDegreesFromVertical[i],
+              maxDegreesFromVertical[i]);
+    }
+    return snapshot;
   }
 }
@@ -0,0 +1,233 @@
+package frc.robot.util;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.trajectory.TrapezoidProfile;
+import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
+import java.util.function.IntPredicate;
+
+/**
+ * A time-parameterized trajectory that moves the elevator and pivot at the same time while keeping
+ * the pivot inside the {@link ExtenderConstraints} angle envelope.
+ *
+ * <p>Both mechanisms follow trapezoid profiles under their own velocity and acceleration limits.
+ * The pivot is steered toward its goal, clamped to the part of the envelope that the elevator is
+ * about to pass through. If the pivot cannot keep up, for example because it has to fold in before
+ * the elevator can go down, the start of the elevator's motion is delayed by the shortest amount
+ * that keeps the pivot inside the envelope.
+ */
+public class ExtenderTrajectory {
+  public static final double DT = 0.02;
+
+  private static final double MAX_DURATION_SECONDS = 5.0;
+  private static final int MAX_SAMPLES = (int) Math.ceil(MAX_DURATION_SECONDS / DT) + 1;
+
+  // Allowed error when checking the envelope and when deciding that a mechanism has arrived
+  private static final double ANGLE_TOLERANCE_DEGREES = 1.0;
+  private static final double POSITION_EPSILON = 1e-3;
+
+  private final double[] heights = new double[MAX_SAMPLES];
+  private final double[] heightVelocities = new double[MAX_SAMPLES];
+  private final double[] angles = new double[MAX_SAMPLES];
+  private final double[] angleVelocities = new double[MAX_SAMPLES];
+  private int length;
+  private boolean feasible;
+
+  private ExtenderTrajectory() {}
+
+  /**
+   * Plans a trajectory from the current state of both mechanisms to a goal.
+   *
+   * @param constraints The pivot angle envelope.
+   * @param elevatorLimits The elevator limits, in inches per second and inches per second squared.
+   * @param pivotLimits The pivot limits, in degrees per second and degrees per second squared.
+   * @param startHeight The current elevator height and velocity, in inches from the ground.
+   * @param startAngle The current pivot angle and velocity, in degrees from vertical.
+   * @param goalHeight The goal elevator height, in inches from the ground.
+   * @param goalAngle The goal pivot angle, in degrees from vertical.
+   */
+  public static ExtenderTrajectory generate(
+      ExtenderConstraints constraints,
+      TrapezoidProfile.Constraints elevatorLimits,
+      TrapezoidProfile.Constraints pivotLimits,
+      State startHeight,
+      State startAngle,
+      double goalHeight,
+      double goalAngle) {
+    var elevatorProfile = new TrapezoidProfile(elevatorLimits);
+    var pivotProfile = new TrapezoidProfile(pivotLimits);
+
+    // Look ahead far enough for the pivot to make this move from a standstill, so it starts folding
+    // before the elevator reaches a height that needs it
+    pivotProfile.calculate(0, new State(startAngle.position, 0), new State(goalAngle, 0));
+    double stoppingTime = pivotLimits.maxVelocity / pivotLimits.maxAcceleration;
+    int lookahead = (int) Math.ceil((pivotProfile.totalTime() + stoppingTime) / DT);
+
+    var trajectory = new ExtenderTrajectory();
+    double[] minAngles = new double[MAX_SAMPLES];
+    double[] maxAngles = new double[MAX_SAMPLES];
+    IntPredicate tryDelay =
+        delay ->
+            trajectory.attempt(
+                constraints,
+                elevatorProfile,
+                pivotProfile,
+                startHeight,
+                startAngle,
+                goalHeight,
+                goalAngle,
+                delay,
+                lookahead,
+                minAngles,
+                maxAngles);
+
+    if (tryDelay.test(0)) {
+      return trajectory;
+    }
+
+    // Find the shortest elevator delay that works. Delays are tried in doubling steps, then
+    // narrowed down with a binary search.
+    int infeasibleDelay = 0;
+    int feasibleDelay = -1;
+    for (int delay = 1; delay < MAX_SAMPLES; delay *= 2) {
+      if (tryDelay.test(delay)) {
+        feasibleDelay = delay;
+        break;
+      }
+      infeasibleDelay = delay;
+    }
+
+    if (feasibleDelay < 0) {
+      // Nothing worked, so wait as long as possible and let the caller's clamping handle the rest
+      tryDelay.test(infeasibleDelay);
+      return trajectory;
+    }
+
+    while (feasibleDelay - infeasibleDelay > 1) {
+      int delay = (feasibleDelay + infeasibleDelay) / 2;
+      if (tryDelay.test(delay)) {
+        feasibleDelay = delay;
+      } else {
+        infeasibleDelay = delay;
+      }
+    }
+
+    tryDelay.test(feasibleDelay);
+    return trajectory;
+  }
+
+  /** Fills in the samples for one elevator delay and returns whether they stay in the envelope. */
+  private boolean attempt(
+      ExtenderConstraints constraints,
+      TrapezoidProfile elevatorProfile,
+      TrapezoidProfile pivotProfile,
+      State startHeight,
+      State startAngle,
+      double goalHeight,
+      double goalAngle,
+      int elevatorDelay,
+      int lookahead,
+      double[] minAngles,
+      double[] maxAngles) {
+    // Elevator first, since the pivot's targets depend on where the elevator is going
+    var holdState = new State(startHeight.position, 0);
+    var goalState = new State(goalHeight, 0);
+    var state = startHeight;
+    int elevatorEnd = MAX_SAMPLES - 1;
+    for (int i = 0; i < MAX_SAMPLES; i++) {
+      heights[i] = state.position;
+      heightVelocities[i] = state.velocity;
+      minAngles[i] = constraints.getMinDegreesFromVertical(state.position);
+      maxAngles[i] = constraints.getMaxDegreesFromVertical(state.position);
+      if (i >= elevatorDelay && elevatorEnd == MAX_SAMPLES - 1 && isAt(state, goalHeight)) {
+        elevatorEnd = i;
+      }
+      state = elevatorProfile.calculate(DT, state, i < elevatorDelay ? holdState : goalState);
+    }
+
+    double startViolation =
+        violation(startAngle.position, minAngles[0], maxAngles[0]) + ANGLE_TOLERANCE_DEGREES;
+    boolean withinEnvelope = true;
+    length = MAX_SAMPLES;
+
+    state = startAngle;
+    for (int i = 0; i < MAX_SAMPLES; i++) {
+      angles[i] = state.position;
+      angleVelocities[i] = state.velocity;
+      if (i > 0 && violation(state.position, minAngles[i], maxAngles[i]) > startViolation) {
+        withinEnvelope = false;
+      }
+
+      // The part of the envelope that is allowed for the whole lookahead window
+      double low = Double.NEGATIVE_INFINITY;
+      double high = Double.POSITIVE_INFINITY;
+      int windowEnd = Math.min(MAX_SAMPLES - 1, i + 1 + lookahead);
+      for (int j = i + 1; j <= windowEnd; j++) {
+        low = Math.max(low, minAngles[j]);
+        high = Math.min(high, maxAngles[j]);
+      }
+      double target;
+      if (low <= high) {
+        target = MathUtil.clamp(goalAngle, low, high);
+      } else {
+        // The window can't be satisfied by one angle, so only look at the next step
+        int next = Math.min(MAX_SAMPLES - 1, i + 1);
+        target = MathUtil.clamp(goalAngle, minAngles[next], maxAngles[next]);
+      }
+
+      if (i >= elevatorEnd && isAt(state, target)) {
+        length = i + 1;
+        break;
+      }
+      state = pivotProfile.calculate(DT, state, new State(target, 0));
+    }
+
+    feasible = withinEnvelope;
+    return withinEnvelope;
+  }
+
+  private static boolean isAt(State state, double position) {
+    return Math.abs(state.position - position) < POSITION_EPSILON
+        && Math.abs(state.velocity) < POSITION_EPSILON;
+  }
+
+  private static double violation(double angle, double min, double max) {
+    return Math.max(0, Math.max(min - angle, angle - max));
+  }
+
+  /** Returns whether the pivot stays inside the envelope for the whole trajectory. */
+  public boolean isFeasible() {
+    return feasible;
+  }
+
+  public double getTotalTimeSeconds() {
+    return (length - 1) * DT;
+  }
+
+  public double getHeightInches(double timeSeconds) {
+    return sample(heights, timeSeconds);
+  }
+
+  public double getHeightVelocity(double timeSeconds) {
+    return sample(heightVelocities, timeSeconds);
+  }
+
+  public double getDegreesFromVertical(double timeSeconds) {
+    return sample(angles, timeSeconds);
+  }
+
+  public double getAngleVelocity(double timeSeconds) {
+    return sample(angleVelocities, timeSeconds);
+  }
+
+  private double sample(double[] samples, double timeSeconds) {
+    double index = timeSeconds / DT;
+    if (!(index > 0)) {
+      return samples[0];
+    } else if (index >= length - 1) {
+      return samples[length - 1];
+    }
+    int below = (int) index;
+    double percent = index - below;
+    return samples[below] + (samples[below + 1] - samples[below]) * percent;
+  }
+}
@@ -0,0 +1,70 @@
+package frc.robot.util;
+
+import edu.wpi.first.util.struct.StructSerializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * An output array that is filled and logged every cycle without creating garbage. The key is built
+ * once, values are collected into a reused buffer, and each length of array that gets logged is
+ * only allocated the first time that length is needed.
+ *
+ * <p>Struct values are serialized when they are recorded, so reusing the logged arrays on the next
+ * cycle doesn't change what was logged.
+ */
+public class LoggedStructArray<T extends StructSerializable> {
+  private final String key;
+  private final IntFunction<T[]> arrayFactory;
+  private final List<T[]> arraysByLength = new ArrayList<>();
+  private T[] values;
+  private int size = 0;
+
+  /**
+   * Creates a new LoggedStructArray.
+   *
+   * @param key The output key.
+   * @param arrayFactory Creates arrays of the value type, for example {@code Pose3d[]::new}.
+   * @param initialCapacity The number of values expected per cycle. More can be added, but the
+   *     buffer will have to grow.
+   */
+  public LoggedStructArray(String key, IntFunction<T[]> arrayFactory, int initialCapacity) {
+    this.key = key;
+    this.arrayFactory = arrayFactory;
+    values = arrayFactory.apply(initialCapacity);
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public void add(T value) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(1, values.length * 2));
+    }
+    values[size++] = value;
+  }
+
+  /** Adds every value currently in another array, for logging summaries. */
+  public void addAll(LoggedStructArray<T> other) {
+    for (int i = 0; i < other.size; i++) {
+      add(other.values[i]);
+    }
+  }
+
+  /** Logs the values added since the last {@link #clear()}. */
+  public void record() {
+    while (arraysByLength.size() <= size) {
+      arraysByLength.add(null);
+    }
+    T[] array = arraysByLength.get(size);
+    if (array == null) {
+      array = arrayFactory.apply(size);
+      arraysByLength.set(size, array);
+    }
+    System.arraycopy(values, 0, array, 0, size);
+    Logger.recordOutput(key, array);
+  }
+}
@@ -1,9 +1,15 @@
 package frc.robot.util;
 
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import frc.robot.Constants;
+import frc.robot.Constants.Mode;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.DoubleSupplier;
 import org.littletonrobotics.junction.networktables.LoggedNetworkNumber;
@@ -11,15 +17,39 @@ import org.littletonrobotics.junction.networktables.LoggedNetworkNumber;
 /**
  * Class for a tunable number. Gets value from dashboard in tuning mode, returns default if not or
  * value not in dashboard.
+ *
+ * <p>Changes are found once per loop by {@link #updateAll()}, which gives each number that changed
+ * a new generation. Checking for changes is then only an int comparison per caller. A NetworkTables
+ * listener tells {@link #updateAll()} when anything under the tuning table was written, so most
+ * loops don't look at any values. In replay the values come from the log instead, so they are
+ * compared every loop.
  */
 public class LoggedTunableNumber implements DoubleSupplier {
   private static final String tableKey = "/Tuning";
 
+  // Every number with a default, in creation order
+  private static final List<LoggedTunableNumber> all = new ArrayList<>();
+  private static final List<LoggedTunableNumber> changed = new ArrayList<>();
+  private static final List<LoggedTunableNumber> changedView =
+      Collections.unmodifiableList(changed);
+  private static final AtomicBoolean dashboardWritten = new AtomicBoolean(true);
+  private static boolean listening = false;
+  private static int remainingPolls = 0;
+  private static int globalGeneration = 0;
+
   private final String key;
   private boolean hasDefault = false;
   private double defaultValue;
   private LoggedNetworkNumber dashboardNumber;
-  private Map<Integer, Double> lastHasChangedValues = new HashMap<>();
+
+  // The value as of the last update, and how many times it has changed
+  private double lastValue;
+  private int generation = 0;
+
+  // The generation each caller of hasChanged last saw. Callers are few, so a linear scan is fine.
+  private int[] callerIds = new int[2];
+  private int[] callerGenerations = new int[2];
+  private int callerCount = 0;
 
   /**
    * Create a new LoggedTunableNumber
@@ -50,12 +80,78 @@ public class LoggedTunableNumber implements DoubleSupplier {
     if (!hasDefault) {
       hasDefault = true;
       this.defaultValue = defaultValue;
+      lastValue = defaultValue;
       if (Constants.tuningMode) {
         dashboardNumber = new LoggedNetworkNumber(key, defaultValue);
+        listenForChanges();
       }
+      all.add(this);
+    }
+  }
+
+  private static void listenForChanges() {
+    if (!listening) {
+      listening = true;
+      NetworkTableInstance.getDefault()
+          .addListener(
+              new String[] {tableKey + "/"},
+              EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+              event -> dashboardWritten.set(true));
     }
   }
 
+  /**
+   * Finds the numbers that changed since the last call. Should be called once per loop, before the
+   * command scheduler runs.
+   */
+  public static void updateAll() {
+    changed.clear();
+    if (!Constants.tuningMode) {
+      return;
+    }
+
+    // The dashboard inputs read NetworkTables at the start of the loop, so a write that lands after
+    // that is only visible next loop. Look for changes in both.
+    if (dashboardWritten.getAndSet(false) || Constants.currentMode == Mode.REPLAY) {
+      remainingPolls = 2;
+    }
+    if (remainingPolls == 0) {
+      return;
+    }
+    remainingPolls--;
+
+    for (int i = 0; i < all.size(); i++) {
+      var tunableNumber = all.get(i);
+      double value = tunableNumber.get();
+      if (value != tunableNumber.lastValue) {
+        tunableNumber.lastValue = value;
+        tunableNumber.generation++;
+        changed.add(tunableNumber);
+      }
+    }
+    if (!changed.isEmpty()) {
+      globalGeneration++;
+    }
+  }
+
+  /**
+   * Returns a counter that goes up on every loop in which any number changed. Callers with many
+   * numbers can compare it with the last value they saw and skip their checks if it's the same.
+   */
+  public static int getGlobalGeneration() {
+    return globalGeneration;
+  }
+
+  /** Returns the numbers that changed in the last call to {@link #updateAll()}. */
+  public static List<LoggedTunableNumber> getChanged() {
+    return changedView;
+  }
+
+  /** Returns the key of the number on the dashboard. */
+  public String getKey() {
+    return key;
+  }
+
   /**
    * Get the current value, from dashboard if available and in tuning mode.
    *
@@ -78,14 +174,25 @@ public class LoggedTunableNumber implements DoubleSupplier {
    *     otherwise.
    */
   public boolean hasChanged(int id) {
-    double currentValue = get();
-    Double lastValue = lastHasChangedValues.get(id);
-    if (lastValue == null || currentValue != lastValue) {
-      lastHasChangedValues.put(id, currentValue);
-      return true;
+    int index = 0;
+    while (index < callerCount && callerIds[index] != id) {
+      index++;
+    }
+    if (index == callerCount) {
+      if (callerCount == callerIds.length) {
+        callerIds = Arrays.copyOf(callerIds, callerCount * 2);
+        callerGenerations = Arrays.copyOf(callerGenerations, callerCount * 2);
+      }
+      callerIds[index] = id;
+      callerGenerations[index] = generation - 1; // Always changed for a new caller
+      callerCount++;
     }
 
-    return false;
+    if (callerGenerations[index] == generation) {
+      return false;
+    }
+    callerGenerations[index] = generation;
+    return true;
   }
 
   /**
@@ -99,8 +206,17 @@ public class LoggedTunableNumber implements DoubleSupplier {
    */
   public static void ifChanged(
       int id, Consumer<double[]> action, LoggedTunableNumber... tunableNumbers) {
-    if (Arrays.stream(tunableNumbers).anyMatch(tunableNumber -> tunableNumber.hasChanged(id))) {
-      action.accept(Arrays.stream(tunableNumbers).mapToDouble(LoggedTunableNumber::get).toArray());
+    // Check every number, so each one records that this caller has seen its generation
+    boolean anyChanged = false;
+    for (var tunableNumber : tunableNumbers) {
+      anyChanged |= tunableNumber.hasChanged(id);
+    }
+    if (anyChanged) {
+      double[] values = new double[tunableNumbers.length];
+      for (int i = 0; i < tunableNumbers.length; i++) {
+        values[i] = tunableNumbers[i].get();
+      }
+      action.accept(values);
     }
   }
 
@@ -0,0 +1,257 @@
+package frc.robot.util;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Measures how long each part of the robot loop takes, to find the cause of loop overruns.
+ *
+ * <p>Code is timed in named sections, which are started and stopped around subsystem periodic
+ * methods, IO updates and input logging. Scheduled commands are timed automatically once {@link
+ * #trackCommands()} is called. A section can run more than once per cycle, in which case its times
+ * are added together.
+ *
+ * <p>Every cycle, the p50, p99 and max of each section over the last {@link #WINDOW_CYCLES} cycles
+ * are logged under "LoopProfiler/". When a cycle goes over {@link #LOOP_BUDGET_NANOS}, the sections
+ * that ran in it are printed from slowest to fastest. Everything used per cycle is allocated when a
+ * section is created, so timing doesn't add garbage collection work to the loop.
+ */
+public final class LoopProfiler {
+  public static final long LOOP_BUDGET_NANOS = 20_000_000;
+  public static final int WINDOW_CYCLES = 250;
+
+  private static final int MAX_SECTIONS = 128;
+  private static final int MAX_PENDING_COMMANDS = 16;
+  private static final int OVERRUN_REPORT_LENGTH = 10;
+
+  // Histogram bins are log-linear in microseconds, with SUB_BINS bins per power of two. Values
+  // below SUB_BINS microseconds get one bin each, and everything above MAX_EXPONENT is clamped.
+  private static final int SUB_BINS = 8;
+  private static final int SUB_BIN_BITS = 3;
+  private static final int MAX_EXPONENT = 22; // About 4 seconds
+  private static final int BINS = (MAX_EXPONENT - SUB_BIN_BITS + 2) * SUB_BINS;
+
+  /** A timed part of the loop. */
+  public static final class Section {
+    private final String name;
+    private final String p50Key;
+    private final String p99Key;
+    private final String maxKey;
+
+    private final int[] binCounts = new int[BINS];
+    private final long[] window = new long[WINDOW_CYCLES];
+    private int windowSize = 0;
+    private int windowHead = 0;
+    private long windowMax = 0;
+
+    private long startNanos = 0;
+    private long cycleNanos = 0;
+    private boolean ranThisCycle = false;
+
+    private Section(String name) {
+      this.name = name;
+      p50Key = "LoopProfiler/" + name + "/P50Ms";
+      p99Key = "LoopProfiler/" + name + "/P99Ms";
+      maxKey = "LoopProfiler/" + name + "/MaxMs";
+    }
+
+    public void start() {
+      startNanos = System.nanoTime();
+    }
+
+    public void stop() {
+      cycleNanos += System.nanoTime() - startNanos;
+      ranThisCycle = true;
+    }
+
+    private void add(long nanos) {
+      if (windowSize == WINDOW_CYCLES) {
+        long removed = window[windowHead];
+        binCounts[bin(removed)]--;
+        windowSize--;
+        if (removed == windowMax) {
+          windowMax = 0;
+          for (int i = 1; i <= windowSize; i++) {
+            windowMax = Math.max(windowMax, window[(windowHead + i) % WINDOW_CYCLES]);
+          }
+        }
+      }
+      window[windowHead] = nanos;
+      windowHead = (windowHead + 1) % WINDOW_CYCLES;
+      windowSize++;
+      binCounts[bin(nanos)]++;
+      windowMax = Math.max(windowMax, nanos);
+    }
+
+    private double percentileMs(double percentile) {
+      int target = (int) Math.ceil(percentile * windowSize);
+      int count = 0;
+      for (int i = 0; i < BINS; i++) {
+        count += binCounts[i];
+        if (count >= target) {
+          // Report the middle of the bin
+          return (binLowerMicros(i) + binLowerMicros(i + 1)) / 2000.0;
+        }
+      }
+      return windowMax / 1e6;
+    }
+  }
+
+  private static final Section[] sections = new Section[MAX_SECTIONS];
+  private static int sectionCount = 0;
+
+  private static final Map<String, Section> commandSections = new HashMap<>();
+  private static final String[] pendingCommandNames = new String[MAX_PENDING_COMMANDS];
+  private static int pendingCommandCount = 0;
+  private static Section otherCommands = null;
+  private static long commandLapNanos = 0;
+
+  private static long cycleStartNanos = 0;
+
+  private LoopProfiler() {}
+
+  /** Creates a new section. Allocates, so it should only be called once per section. */
+  public static Section section(String name) {
+    if (sectionCount == MAX_SECTIONS) {
+      throw new IllegalStateException("Too many loop profiler sections, can't add " + name);
+    }
+    var section = new Section(name);
+    sections[sectionCount++] = section;
+    return section;
+  }
+
+  /**
+   * Times each scheduled command. A command's time is measured from the end of the previous
+   * command's execute to the end of its own, so it includes the previous command's isFinished
+   * check. The first command's time starts after the button bindings are polled, so this should be
+   * called after every binding is created.
+   *
+   * <p>Commands are timed by name, so commands with the same name share a section. The first time
+   * a name runs, its time goes to "Commands/Other" and its section is created at the end of the
+   * cycle, so the scheduler callback never allocates.
+   */
+  public static void trackCommands() {
+    otherCommands = section("Commands/Other");
+    var scheduler = CommandScheduler.getInstance();
+    scheduler.getDefaultButtonLoop().bind(() -> commandLapNanos = System.nanoTime());
+    scheduler.onCommandExecute(LoopProfiler::commandExecuted);
+  }
+
+  private static void commandExecuted(Command command) {
+    long now = System.nanoTime();
+    String name = command.getName();
+    var section = commandSections.get(name);
+    if (section == null) {
+      section = otherCommands;
+      addPendingCommand(name);
+    }
+    section.cycleNanos += now - commandLapNanos;
+    section.ranThisCycle = true;
+    commandLapNanos = now;
+  }
+
+  private static void addPendingCommand(String name) {
+    for (int i = 0; i < pendingCommandCount; i++) {
+      if (pendingCommandNames[i].equals(name)) {
+        return;
+      }
+    }
+    if (pendingCommandCount < MAX_PENDING_COMMANDS) {
+      pendingCommandNames[pendingCommandCount++] = name;
+    }
+  }
+
+  /** Creates sections for commands that ran for the first time, while there is room. */
+  private static void createPendingCommandSections() {
+    for (int i = 0; i < pendingCommandCount; i++) {
+      if (sectionCount < MAX_SECTIONS) {
+        commandSections.put(pendingCommandNames[i], section("Commands/" + pendingCommandNames[i]));
+      } else {
+        commandSections.put(pendingCommandNames[i], otherCommands);
+      }
+      pendingCommandNames[i] = null;
+    }
+    pendingCommandCount = 0;
+  }
+
+  /** Marks the start of a loop cycle. Call before running the command scheduler. */
+  public static void startCycle() {
+    cycleStartNanos = System.nanoTime();
+    commandLapNanos = cycleStartNanos;
+  }
+
+  /** Records this cycle's times and logs the statistics. Call after running the scheduler. */
+  public static void endCycle() {
+    long cycleNanos = System.nanoTime() - cycleStartNanos;
+
+    for (int i = 0; i < sectionCount; i++) {
+      var section = sections[i];
+      if (section.ranThisCycle) {
+        section.add(section.cycleNanos);
+      }
+      if (section.windowSize > 0) {
+        Logger.recordOutput(section.p50Key, section.percentileMs(0.5));
+        Logger.recordOutput(section.p99Key, section.percentileMs(0.99));
+        Logger.recordOutput(section.maxKey, section.windowMax / 1e6);
+      }
+    }
+    Logger.recordOutput("LoopProfiler/CycleMs", cycleNanos / 1e6);
+
+    if (cycleNanos > LOOP_BUDGET_NANOS) {
+      reportOverrun(cycleNanos);
+    }
+
+    for (int i = 0; i < sectionCount; i++) {
+      sections[i].cycleNanos = 0;
+      sections[i].ranThisCycle = false;
+    }
+    createPendingCommandSections();
+  }
+
+  private static void reportOverrun(long cycleNanos) {
+    // Only runs on overruns, so it doesn't need to avoid allocating
+    List<Section> ran = new ArrayList<>();
+    for (int i = 0; i < sectionCount; i++) {
+      if (sections[i].ranThisCycle) {
+        ran.add(sections[i]);
+      }
+    }
+    ran.sort((a, b) -> Long.compare(b.cycleNanos, a.cycleNanos));
+
+    var report = new StringBuilder();
+    report.append(String.format("Loop overrun: %.2f ms. Slowest sections:", cycleNanos / 1e6));
+    for (int i = 0; i < Math.min(OVERRUN_REPORT_LENGTH, ran.size()); i++) {
+      var section = ran.get(i);
+      report.append(String.format("%n  %.3f ms  %s", section.cycleNanos / 1e6, section.name));
+    }
+
+    System.out.println(report);
+    Logger.recordOutput("LoopProfiler/LastOverrunReport", report.toString());
+  }
+
+  private static int bin(long nanos) {
+    long micros = nanos / 1000;
+    if (micros < SUB_BINS) {
+      return (int) Math.max(0, micros);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    if (exponent > MAX_EXPONENT) {
+      return BINS - 1;
+    }
+    int subBin = (int) (micros >> (exponent - SUB_BIN_BITS)) & (SUB_BINS - 1);
+    return (exponent - SUB_BIN_BITS + 1) * SUB_BINS + subBin;
+  }
+
+  private static long binLowerMicros(int bin) {
+    if (bin < SUB_BINS) {
+      return bin;
+    }
+    int exponent = bin / SUB_BINS + SUB_BIN_BITS - 1;
+    return (long) (SUB_BINS + bin % SUB_BINS) << (exponent - SUB_BIN_BITS);
+  }
+}
@@ -0,0 +1,76 @@
+package frc.robot.util;
+
+import com.revrobotics.spark.SparkMax;
+import com.revrobotics.spark.config.SparkBaseConfig.IdleMode;
+import com.revrobotics.spark.config.SparkMaxConfig;
+
+/**
+ * Remembers the configuration last sent to a SPARK MAX, so subsystems can set their config every
+ * loop without using the CAN bus. Setters only record parameters that changed, and {@link #apply()}
+ * sends all of them together in one non-blocking configure call.
+ */
+public class SparkMaxConfigWriter {
+
+  private final SparkMax motor;
+
+  // Only holds the parameters that changed since the last apply
+  private SparkMaxConfig pending = new SparkMaxConfig();
+  private boolean hasPendingChanges = false;
+
+  private int smartCurrentLimit = -1;
+  private int inverted = -1; // -1 if never set, otherwise 0 or 1
+  private IdleMode idleMode = null;
+  private double kP = Double.NaN;
+  private double kI = Double.NaN;
+  private double kD = Double.NaN;
+
+  public SparkMaxConfigWriter(SparkMax motor) {
+    this.motor = motor;
+  }
+
+  public void setSmartCurrentLimit(int maxAmps) {
+    if (maxAmps != smartCurrentLimit) {
+      smartCurrentLimit = maxAmps;
+      pending.smartCurrentLimit(maxAmps);
+      hasPendingChanges = true;
+    }
+  }
+
+  public void setInverted(boolean inverted) {
+    int value = inverted ? 1 : 0;
+    if (value != this.inverted) {
+      this.inverted = value;
+      pending.inverted(inverted);
+      hasPendingChanges = true;
+    }
+  }
+
+  public void setIdleMode(IdleMode idleMode) {
+    if (idleMode != this.idleMode) {
+      this.idleMode = idleMode;
+      pending.idleMode(idleMode);
+      hasPendingChanges = true;
+    }
+  }
+
+  public void setClosedLoopPID(double kP, double kI, double kD) {
+    if (kP != this.kP || kI != this.kI || kD != this.kD) {
+      this.kP = kP;
+      this.kI = kI;
+      this.kD = kD;
+      pending.closedLoop.pid(kP, kI, kD);
+      hasPendingChanges = true;
+    }
+  }
+
+  /** Sends every parameter that changed since the last call, if there are any. */
+  public void apply() {
+    if (!hasPendingChanges) {
+      return;
+    }
+
+    SparkMaxUtil.configureMotor(motor, pending);
+    pending = new SparkMaxConfig();
+    hasPendingChanges = false;
+  }
+}
@@ -28,12 +28,14 @@ public class TuneableProfiledPID extends ProfiledPIDController {
   }
 
   public void updatePID() {
-    // If changed, update controller constants from Tuneable Numbers
-    if (m_kP.hasChanged(hashCode()) || m_kI.hasChanged(hashCode()) || m_kD.hasChanged(hashCode())) {
+    // If changed, update controller constants from Tuneable Numbers. Not short-circuited, so every
+    // number records that it was seen.
+    int id = hashCode();
+    if (m_kP.hasChanged(id) | m_kI.hasChanged(id) | m_kD.hasChanged(id)) {
       this.setPID(m_kP.get(), m_kI.get(), m_kD.get());
     }
 
-    if (m_maxV.hasChanged(hashCode()) || m_maxA.hasChanged(hashCode())) {
+    if (m_maxV.hasChanged(id) | m_maxA.hasChanged(id)) {
       this.setConstraints(new TrapezoidProfile.Constraints(m_maxV.get(), m_maxA.get()));
     }
   }
@@ -0,0 +1,252 @@
+package frc.robot;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.pathplanner.lib.commands.PathPlannerAuto;
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.util.LoggedTunableNumber;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.littletonrobotics.junction.Logger;
+
+/**
+ * Checks how much memory the main loop allocates, since on the roboRIO's small serial GC heap every
+ * collection is a pause in the loop.
+ *
+ * <p>The full robot is simulated headlessly like in {@code AutoSimRunner}, with the logger running
+ * so log serialization is included. After a warmup, the bytes allocated by the main thread are
+ * measured every cycle, and the test fails if the average is over the budget. The average is what
+ * matters, since it sets how often the heap fills up. Other threads are reported but not checked.
+ *
+ * <p>Allocations on the main thread are also sampled with Java Flight Recorder, and the robot code
+ * methods that allocate the most are printed, so a regression points at its cause.
+ *
+ * <p>The budget and run are set with Gradle properties, "allocationBudgetBytes" per cycle (default
+ * {@value #DEFAULT_BUDGET_BYTES}), "allocationBudgetCycles" (default {@value #DEFAULT_CYCLES}), and
+ * "allocationBudgetAuto" to run an auto instead of teleop with the default commands. For example
+ * "./gradlew test --tests '*AllocationBudgetTest' -PallocationBudgetBytes=8192".
+ */
+class AllocationBudgetTest {
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final int WARMUP_CYCLES = 250;
+  private static final int DEFAULT_CYCLES = 1000;
+  private static final long DEFAULT_BUDGET_BYTES = 16 * 1024;
+  private static final int REPORT_LENGTH = 15;
+
+  private static final String ALLOCATION_EVENT = "jdk.ObjectAllocationSample";
+  private static final String ROBOT_PACKAGE = "frc.robot.";
+
+  private RobotContainer robotContainer;
+
+  @AfterEach
+  void shutdown() {
+    HAL.shutdown();
+  }
+
+  @Test
+  void mainLoopStaysWithinBudget() throws IOException {
+    int cycles = Integer.getInteger("allocationBudgetCycles", DEFAULT_CYCLES);
+    long budget = Long.getLong("allocationBudgetBytes", DEFAULT_BUDGET_BYTES);
+    String autoName = System.getProperty("allocationBudgetAuto");
+
+    startSimulation();
+    Logger.start();
+    DriverStationSim.setAutonomous(autoName != null);
+    DriverStationSim.setEnabled(true);
+    DriverStationSim.notifyNewData();
+    if (autoName != null) {
+      new PathPlannerAuto(autoName).schedule();
+    }
+
+    for (int i = 0; i < WARMUP_CYCLES; i++) {
+      step();
+    }
+
+    var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long mainThreadId = Thread.currentThread().getId();
+    long[] threadIds = threadBean.getAllThreadIds();
+    long[] threadBytesBefore = threadBean.getThreadAllocatedBytes(threadIds);
+    long[] cycleBytes = new long[cycles];
+
+    Path recordingPath = Files.createTempFile("allocations", ".jfr");
+    try (var recording = new Recording()) {
+      recording.enable(ALLOCATION_EVENT).withStackTrace().with("throttle", "10000/s");
+      recording.start();
+
+      for (int i = 0; i < cycles; i++) {
+        long before = threadBean.getCurrentThreadAllocatedBytes();
+        step();
+        cycleBytes[i] = threadBean.getCurrentThreadAllocatedBytes() - before;
+      }
+
+      recording.stop();
+      recording.dump(recordingPath);
+    }
+    long[] threadBytesAfter = threadBean.getThreadAllocatedBytes(threadIds);
+
+    long totalBytes = 0;
+    for (long bytes : cycleBytes) {
+      totalBytes += bytes;
+    }
+    double averageBytes = (double) totalBytes / cycles;
+    long[] sortedBytes = cycleBytes.clone();
+    Arrays.sort(sortedBytes);
+
+    System.out.println();
+    System.out.println("Main thread allocations over " + cycles + " cycles:");
+    System.out.println(String.format("  Average  %,12.0f bytes per cycle", averageBytes));
+    System.out.println(
+        String.format("  P50      %,12d bytes", sortedBytes[(int) (0.5 * (cycles - 1))]));
+    System.out.println(
+        String.format("  P99      %,12d bytes", sortedBytes[(int) (0.99 * (cycles - 1))]));
+    System.out.println(String.format("  Max      %,12d bytes", sortedBytes[cycles - 1]));
+    System.out.println(String.format("  Budget   %,12d bytes", budget));
+
+    printThreads(threadBean, mainThreadId, threadIds, threadBytesBefore, threadBytesAfter, cycles);
+    printCallSites(recordingPath, mainThreadId, cycles);
+    Files.deleteIfExists(recordingPath);
+
+    assertTrue(
+        averageBytes <= budget,
+        String.format(
+            "Main loop allocates %,.0f bytes per cycle, over the budget of %,d. See the test"
+                + " output for the call sites.",
+            averageBytes, budget));
+  }
+
+  /** Starts the robot code in simulation with timing paused, like {@code AutoSimRunner}. */
+  private void startSimulation() {
+    assertTrue(HAL.initialize(500, 0), "Failed to initialize the HAL");
+    SimHooks.pauseTiming();
+    DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+    DriverStationSim.setDsAttached(true);
+    for (int port = 0; port < 2; port++) {
+      DriverStationSim.setJoystickAxisCount(port, 6);
+      DriverStationSim.setJoystickButtonCount(port, 10);
+      DriverStationSim.setJoystickPOVCount(port, 1);
+    }
+    robotContainer = new RobotContainer(false);
+  }
+
+  private void step() {
+    SimHooks.stepTiming(LOOP_PERIOD_SECONDS);
+    DriverStation.refreshData();
+    Logger.periodicBeforeUser();
+    LoggedTunableNumber.updateAll();
+    CommandScheduler.getInstance().run();
+    robotContainer.updateSimulation();
+    Logger.periodicAfterUser(0, 0);
+  }
+
+  /** Prints the other threads that allocated the most during the measured cycles. */
+  private static void printThreads(
+      com.sun.management.ThreadMXBean threadBean,
+      long mainThreadId,
+      long[] threadIds,
+      long[] bytesBefore,
+      long[] bytesAfter,
+      int cycles) {
+    List<Integer> indices = new ArrayList<>();
+    for (int i = 0; i < threadIds.length; i++) {
+      if (threadIds[i] != mainThreadId && bytesBefore[i] >= 0 && bytesAfter[i] >= 0) {
+        indices.add(i);
+      }
+    }
+    indices.sort(
+        (a, b) -> Long.compare(bytesAfter[b] - bytesBefore[b], bytesAfter[a] - bytesBefore[a]));
+
+    System.out.println();
+    System.out.println("Other threads:");
+    for (int i = 0; i < Math.min(REPORT_LENGTH, indices.size()); i++) {
+      int index = indices.get(i);
+      var info = threadBean.getThreadInfo(threadIds[index]);
+      System.out.println(
+          String.format(
+              "  %,12.0f bytes per cycle  %s",
+              (double) (bytesAfter[index] - bytesBefore[index]) / cycles,
+              info != null ? info.getThreadName() : "Thread " + threadIds[index]));
+    }
+  }
+
+  /**
+   * Prints where the main thread's sampled allocations came from. Each sample is attributed to the
+   * innermost robot code method on its stack, since that's the code that can be changed, along
+   * with the method that did the allocation.
+   */
+  private static void printCallSites(Path recordingPath, long mainThreadId, int cycles)
+      throws IOException {
+    Map<String, Long> bytesBySite = new HashMap<>();
+    long sampledBytes = 0;
+    for (RecordedEvent event : RecordingFile.readAllEvents(recordingPath)) {
+      if (!event.getEventType().getName().equals(ALLOCATION_EVENT)
+          || event.getThread() == null
+          || event.getThread().getJavaThreadId() != mainThreadId
+          || event.getStackTrace() == null) {
+        continue;
+      }
+
+      List<RecordedFrame> frames = event.getStackTrace().getFrames();
+      if (frames.isEmpty()) {
+        continue;
+      }
+      String site = "(no robot code)";
+      for (var frame : frames) {
+        if (frame.getMethod().getType().getName().startsWith(ROBOT_PACKAGE)) {
+          site = describe(frame);
+          break;
+        }
+      }
+      String allocator = describe(frames.get(0));
+      if (!allocator.equals(site)) {
+        site += "  <- " + allocator;
+      }
+
+      long weight = event.getLong("weight");
+      bytesBySite.merge(site, weight, Long::sum);
+      sampledBytes += weight;
+    }
+
+    List<Map.Entry<String, Long>> sites = new ArrayList<>(bytesBySite.entrySet());
+    sites.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+    System.out.println();
+    System.out.println("Top allocating call sites on the main thread (sampled):");
+    for (int i = 0; i < Math.min(REPORT_LENGTH, sites.size()); i++) {
+      var entry = sites.get(i);
+      System.out.println(
+          String.format(
+              "  %,12.0f bytes per cycle  %5.1f%%  %s",
+              (double) entry.getValue() / cycles,
+              sampledBytes > 0 ? 100.0 * entry.getValue() / sampledBytes : 0.0,
+              entry.getKey()));
+    }
+  }
+
+  private static String describe(RecordedFrame frame) {
+    var method = frame.getMethod();
+    String className = method.getType().getName();
+    return className.substring(className.lastIndexOf('.') + 1)
+        + "."
+        + method.getName()
+        + ":"
+        + frame.getLineNumber();
+  }
+}
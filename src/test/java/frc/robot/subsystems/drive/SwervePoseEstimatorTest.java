@@ -0,0 +1,167 @@
+package frc.robot.subsystems.drive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link SwervePoseEstimator} gives the same estimates as WPILib's
+ * SwerveDrivePoseEstimator when both are given the same odometry and vision inputs.
+ *
+ * <p>The robot drives a random path with 250 Hz odometry, and the estimates are compared after
+ * every odometry sample and vision measurement. The inputs come from a seeded random, so a failure
+ * can be repeated.
+ */
+class SwervePoseEstimatorTest {
+  private static final double SAMPLE_PERIOD_SECONDS = 0.004;
+  private static final int SAMPLES_PER_CYCLE = 5;
+  private static final double TOLERANCE = 1e-9;
+
+  // Not square, so the x and y kinematics differ
+  private static final Translation2d[] MODULE_TRANSLATIONS = {
+    new Translation2d(0.3, 0.25),
+    new Translation2d(0.3, -0.25),
+    new Translation2d(-0.3, 0.25),
+    new Translation2d(-0.3, -0.25)
+  };
+
+  private final Random random = new Random(3464);
+  private final SwerveModulePosition[] positions = new SwerveModulePosition[4];
+  private Rotation2d gyroAngle = Rotation2d.fromRadians(0.3);
+  private double timestamp = 0.0;
+
+  private SwervePoseEstimator estimator;
+  private SwerveDrivePoseEstimator wpilibEstimator;
+
+  @BeforeEach
+  void setup() {
+    for (int i = 0; i < 4; i++) {
+      positions[i] =
+          new SwerveModulePosition(
+              random.nextDouble(), Rotation2d.fromRadians(2 * Math.PI * random.nextDouble()));
+    }
+    // The gyro doesn't start at the pose's heading, so the gyro offset is used
+    var initialPose = new Pose2d(1.0, 2.0, Rotation2d.fromRadians(1.0));
+    estimator = new SwervePoseEstimator(MODULE_TRANSLATIONS, gyroAngle, positions, initialPose);
+    wpilibEstimator =
+        new SwerveDrivePoseEstimator(
+            new SwerveDriveKinematics(MODULE_TRANSLATIONS), gyroAngle, positions, initialPose);
+  }
+
+  @Test
+  void matchesWpilibWithOdometryOnly() {
+    for (int i = 0; i < 1000; i++) {
+      step();
+    }
+  }
+
+  @Test
+  void matchesWpilibWithVision() {
+    // Longer than the 1.5 s history, so old odometry and vision updates are dropped
+    for (int cycle = 0; cycle < 200; cycle++) {
+      cycle();
+    }
+  }
+
+  @Test
+  void matchesWpilibWithUnusualVisionTimestamps() {
+    for (int cycle = 0; cycle < 100; cycle++) {
+      cycle();
+    }
+
+    // Older than the history, which is skipped
+    addVision(2.0, 0.5);
+    step();
+
+    // Older than the last few measurements, which are dropped
+    addVision(0.5, 0.5);
+    step();
+
+    // Newer than the latest odometry sample
+    addVision(-0.01, 0.5);
+    step();
+
+    // Two measurements at the same time, where the second replaces the first
+    addVision(0.05, 0.5);
+    addVision(0.05, 1.0);
+    for (int cycle = 0; cycle < 10; cycle++) {
+      cycle();
+    }
+  }
+
+  @Test
+  void matchesWpilibAfterReset() {
+    for (int cycle = 0; cycle < 50; cycle++) {
+      cycle();
+    }
+
+    var pose = new Pose2d(-3.0, 4.0, Rotation2d.fromRadians(-2.0));
+    estimator.resetPosition(gyroAngle, positions, pose);
+    wpilibEstimator.resetPosition(gyroAngle, positions, pose);
+    assertSamePose();
+
+    for (int cycle = 0; cycle < 50; cycle++) {
+      cycle();
+    }
+  }
+
+  /** Runs one 20 ms robot loop, with its odometry samples and one delayed vision measurement. */
+  private void cycle() {
+    for (int i = 0; i < SAMPLES_PER_CYCLE; i++) {
+      step();
+    }
+    addVision(0.02 + 0.1 * random.nextDouble(), random.nextBoolean() ? 0.3 : 1.0);
+  }
+
+  /** Drives a little further along a random curve and gives both estimators the new sample. */
+  private void step() {
+    timestamp += SAMPLE_PERIOD_SECONDS;
+    for (int i = 0; i < 4; i++) {
+      positions[i] =
+          new SwerveModulePosition(
+              positions[i].distanceMeters + 0.02 * random.nextDouble(),
+              positions[i].angle.plus(Rotation2d.fromRadians(0.05 * random.nextGaussian())));
+    }
+    gyroAngle = gyroAngle.plus(Rotation2d.fromRadians(0.02 * random.nextGaussian()));
+
+    estimator.updateWithTime(timestamp, gyroAngle, positions);
+    wpilibEstimator.updateWithTime(timestamp, gyroAngle, positions);
+    assertSamePose();
+  }
+
+  /** Gives both estimators a noisy vision measurement of the estimate from some time ago. */
+  private void addVision(double latencySeconds, double stdDev) {
+    var estimate = wpilibEstimator.getEstimatedPosition();
+    var visionPose =
+        new Pose2d(
+            estimate.getX() + 0.2 * random.nextGaussian(),
+            estimate.getY() + 0.2 * random.nextGaussian(),
+            estimate.getRotation().plus(Rotation2d.fromRadians(0.1 * random.nextGaussian())));
+    var stdDevs = VecBuilder.fill(stdDev, stdDev, 2 * stdDev);
+
+    estimator.addVisionMeasurement(visionPose, timestamp - latencySeconds, stdDevs);
+    wpilibEstimator.addVisionMeasurement(visionPose, timestamp - latencySeconds, stdDevs);
+    assertSamePose();
+  }
+
+  private void assertSamePose() {
+    var expected = wpilibEstimator.getEstimatedPosition();
+    var actual = estimator.getEstimatedPosition();
+    assertEquals(expected.getX(), actual.getX(), TOLERANCE, "x at " + timestamp);
+    assertEquals(expected.getY(), actual.getY(), TOLERANCE, "y at " + timestamp);
+    assertEquals(
+        0.0,
+        expected.getRotation().minus(actual.getRotation()).getRadians(),
+        TOLERANCE,
+        "heading at " + timestamp);
+  }
+}
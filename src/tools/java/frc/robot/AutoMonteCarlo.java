@@ -0,0 +1,218 @@
+package frc.robot;
+
+import frc.robot.AutoSimRunner.Result;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs many randomized copies of each auto in parallel and prints how often each one succeeds and
+ * how long it takes.
+ *
+ * <p>The robot code uses static state (the HAL, the command scheduler and the AdvantageKit logger),
+ * and the subsystems and sims keep state between autos, so each run gets a fresh {@link
+ * AutoSimRunner} worker process. One thread per core takes runs from a shared queue, so threads
+ * stuck with slow autos don't hold up the rest. Each run has its own seed, which varies the start
+ * pose, wheel slip, mechanism speed and camera calibration. Starting a process per run is slower
+ * than reusing one, but nothing from one run affects the next. A failed run can be repeated with
+ * "./gradlew simulateAutos --args='--worker SEED AUTO'". With "--vision" the repeat may still
+ * differ slightly, since cameras are read on background threads.
+ *
+ * <p>Arguments are the number of runs per auto, the number of workers (defaults to one per core),
+ * then auto names (defaults to every auto). Add "--vision" to simulate the cameras, which is much
+ * slower. Run with "./gradlew monteCarloAutos --args='200'".
+ */
+public final class AutoMonteCarlo {
+  private static final int DEFAULT_RUNS_PER_AUTO = 100;
+
+  // A run only counts as a success if it finished close to where the last path ended
+  private static final double MAX_SUCCESS_POSE_ERROR_METERS = 0.3;
+
+  private record Job(String autoName, long seed) {}
+
+  private AutoMonteCarlo() {}
+
+  public static void main(String... args) throws InterruptedException {
+    List<String> arguments = new ArrayList<>(Arrays.asList(args));
+    boolean simulateCameras = arguments.remove(AutoSimRunner.VISION_FLAG);
+    int runsPerAuto =
+        arguments.isEmpty() ? DEFAULT_RUNS_PER_AUTO : Integer.parseInt(arguments.remove(0));
+    int workerCount =
+        arguments.isEmpty()
+            ? Runtime.getRuntime().availableProcessors()
+            : Integer.parseInt(arguments.remove(0));
+    List<String> autoNames = arguments.isEmpty() ? AutoSimRunner.findAutoNames() : arguments;
+
+    var jobs = new ConcurrentLinkedQueue<Job>();
+    long seed = 0;
+    for (int run = 0; run < runsPerAuto; run++) {
+      for (String autoName : autoNames) {
+        jobs.add(new Job(autoName, seed++));
+      }
+    }
+    int jobCount = jobs.size();
+    System.out.println(
+        "Running " + jobCount + " autos on " + workerCount + " workers, seeds 0 to " + (seed - 1));
+
+    List<Result> results = new CopyOnWriteArrayList<>();
+    long startNanos = System.nanoTime();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < workerCount; i++) {
+      var thread =
+          new Thread(() -> runWorker(jobs, results, jobCount, simulateCameras), "Worker " + i);
+      thread.start();
+      threads.add(thread);
+    }
+    for (var thread : threads) {
+      thread.join();
+    }
+    double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+    printSummary(autoNames, results);
+    System.out.println(
+        String.format(
+            "%nSimulated %d autos in %.1f s (%.2f per second)",
+            results.size(), elapsedSeconds, results.size() / elapsedSeconds));
+    System.exit(results.size() == jobCount ? 0 : 1);
+  }
+
+  /**
+   * Runs jobs until the queue is empty, each in a new worker process. If a process dies, its job is
+   * recorded as a failure.
+   */
+  private static void runWorker(
+      ConcurrentLinkedQueue<Job> jobs,
+      List<Result> results,
+      int jobCount,
+      boolean simulateCameras) {
+    Job job;
+    while ((job = jobs.poll()) != null) {
+      Result result = null;
+      Process process = null;
+      try {
+        process = startWorkerProcess(job, simulateCameras);
+        result =
+            readResult(
+                new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)));
+      } catch (IOException e) {
+        System.out.println("Lost contact with a worker: " + e);
+      } finally {
+        if (process != null) {
+          process.destroy();
+        }
+      }
+
+      if (result == null) {
+        System.out.println("Worker died running " + job.autoName() + " with seed " + job.seed());
+        result =
+            new Result(job.autoName(), job.seed(), false, Double.NaN, 0, Double.NaN, Double.NaN);
+      }
+      results.add(result);
+      int done = results.size();
+      if (done % 100 == 0 || done == jobCount) {
+        System.out.println("Finished " + done + " of " + jobCount);
+      }
+    }
+  }
+
+  /** Reads the worker's output until its result, or returns null if it exits first. */
+  private static Result readResult(BufferedReader output) throws IOException {
+    String line;
+    while ((line = output.readLine()) != null) {
+      // Everything else the robot code prints is ignored
+      if (line.startsWith(AutoSimRunner.RESULT_PREFIX)) {
+        return Result.fromLine(line);
+      }
+    }
+    return null;
+  }
+
+  private static Process startWorkerProcess(Job job, boolean simulateCameras) throws IOException {
+    String java = ProcessHandle.current().info().command().orElse("java");
+    List<String> command = new ArrayList<>();
+    command.add(java);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+    command.add(AutoSimRunner.class.getName());
+    if (simulateCameras) {
+      command.add(AutoSimRunner.VISION_FLAG);
+    }
+    command.add(AutoSimRunner.WORKER_FLAG);
+    command.add(Long.toString(job.seed()));
+    command.add(job.autoName());
+
+    // Worker errors are passed through, since they are the only sign of why a worker died
+    return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+  }
+
+  private static void printSummary(List<String> autoNames, List<Result> results) {
+    Map<String, List<Result>> resultsByAuto = new TreeMap<>();
+    for (String autoName : autoNames) {
+      resultsByAuto.put(autoName, new ArrayList<>());
+    }
+    for (var result : results) {
+      resultsByAuto.computeIfAbsent(result.name(), name -> new ArrayList<>()).add(result);
+    }
+
+    System.out.println();
+    System.out.println(
+        String.format(
+            "%-40s %5s %8s %7s %7s %7s %7s %10s",
+            "Auto", "Runs", "Success", "P10 (s)", "P50 (s)", "P90 (s)", "Scored", "Error (m)"));
+    for (var entry : resultsByAuto.entrySet()) {
+      var autoResults = entry.getValue();
+      int successes = 0;
+      double totalScored = 0;
+      double totalError = 0;
+      int errorCount = 0;
+      List<Double> times = new ArrayList<>();
+      for (var result : autoResults) {
+        if (result.finished()) {
+          times.add(result.durationSeconds());
+          if (result.poseErrorMeters() <= MAX_SUCCESS_POSE_ERROR_METERS
+              || Double.isNaN(result.poseErrorMeters())) {
+            successes++;
+          }
+        }
+        totalScored += result.piecesScored();
+        if (!Double.isNaN(result.poseErrorMeters())) {
+          totalError += result.poseErrorMeters();
+          errorCount++;
+        }
+      }
+      times.sort(Double::compare);
+
+      int runs = autoResults.size();
+      System.out.println(
+          String.format(
+              "%-40s %5d %7.1f%% %7.2f %7.2f %7.2f %7.2f %10.3f",
+              entry.getKey(),
+              runs,
+              runs > 0 ? 100.0 * successes / runs : 0,
+              percentile(times, 0.1),
+              percentile(times, 0.5),
+              percentile(times, 0.9),
+              runs > 0 ? totalScored / runs : 0,
+              errorCount > 0 ? totalError / errorCount : Double.NaN));
+    }
+  }
+
+  /** Returns a percentile of sorted values, or NaN if there are none. */
+  private static double percentile(List<Double> sorted, double percentile) {
+    if (sorted.isEmpty()) {
+      return Double.NaN;
+    }
+    int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+    return sorted.get(Math.max(0, Math.min(sorted.size() - 1, index)));
+  }
+}
@@ -0,0 +1,293 @@
+package frc.robot;
+
+import com.pathplanner.lib.commands.PathPlannerAuto;
+import com.pathplanner.lib.path.PathPlannerPath;
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs autonomous routines in a headless simulation, as fast as the CPU allows. Simulated time is
+ * paused and stepped by hand, and the command scheduler is run once per step, just like {@link
+ * Robot#robotPeriodic()}.
+ *
+ * <p>Pass auto names (without ".auto") as arguments, or nothing to run every auto in the deploy
+ * directory. For each auto this prints how long it took, how many pieces it scored and how far the
+ * robot ended from the end of the last path. Run with "./gradlew simulateAutos".
+ *
+ * <p>Autos listed together run one after another in the same simulation, so mechanism positions
+ * and other state carry over between them like they would on a robot.
+ *
+ * <p>With the "--worker" argument followed by a seed and an auto name, this instead runs that one
+ * auto with random variation from the seed, prints one result line and exits. {@link
+ * AutoMonteCarlo} uses this to run each auto in a fresh process, so no state from earlier runs
+ * (mechanism sims, setpoints, the pose estimator's history) leaks into a run.
+ */
+public final class AutoSimRunner {
+  private static final double LOOP_PERIOD_SECONDS = 0.02;
+  private static final double AUTO_DURATION_SECONDS = 15.0;
+  private static final double SETTLE_SECONDS = 1.0;
+
+  // The end effector runs at full speed when scoring, and at lower speeds when intaking
+  private static final double SCORING_VELOCITY_PERCENT = 0.9;
+
+  static final String WORKER_FLAG = "--worker";
+  static final String VISION_FLAG = "--vision";
+  static final String RESULT_PREFIX = "RESULT\t";
+
+  // Spread of the random variation in worker mode
+  private static final double START_TRANSLATION_STD_DEV_METERS = 0.05;
+  private static final double START_ROTATION_STD_DEV_DEGREES = 2.0;
+  private static final double MIN_DRIVE_TRACTION = 0.85;
+  private static final double MECHANISM_SPEED_STD_DEV = 0.1;
+  private static final double MAX_VISION_CALIB_ERROR_PIXELS = 1.0;
+
+  record Result(
+      String name,
+      long seed,
+      boolean finished,
+      double durationSeconds,
+      int piecesScored,
+      double poseErrorMeters,
+      double headingErrorDegrees) {
+
+    String toLine() {
+      return RESULT_PREFIX
+          + String.join(
+              "\t",
+              Long.toString(seed),
+              Boolean.toString(finished),
+              Double.toString(durationSeconds),
+              Integer.toString(piecesScored),
+              Double.toString(poseErrorMeters),
+              Double.toString(headingErrorDegrees),
+              name);
+    }
+
+    static Result fromLine(String line) {
+      String[] parts = line.substring(RESULT_PREFIX.length()).split("\t", 7);
+      return new Result(
+          parts[6],
+          Long.parseLong(parts[0]),
+          Boolean.parseBoolean(parts[1]),
+          Double.parseDouble(parts[2]),
+          Integer.parseInt(parts[3]),
+          Double.parseDouble(parts[4]),
+          Double.parseDouble(parts[5]));
+    }
+  }
+
+  private AutoSimRunner() {}
+
+  public static void main(String... args) {
+    List<String> arguments = new ArrayList<>(Arrays.asList(args));
+    boolean worker = arguments.remove(WORKER_FLAG);
+    boolean simulateCameras = arguments.remove(VISION_FLAG);
+
+    var robotContainer = startSimulation(simulateCameras);
+    if (worker) {
+      runWorker(robotContainer, Long.parseLong(arguments.get(0)), arguments.get(1));
+      return;
+    }
+
+    List<String> autoNames = arguments.isEmpty() ? findAutoNames() : arguments;
+    List<Result> results = new ArrayList<>();
+    for (String autoName : autoNames) {
+      results.add(runAutoSafely(robotContainer, autoName, 0, null));
+    }
+
+    System.out.println();
+    System.out.println(
+        String.format(
+            "%-40s %8s %8s %7s %10s %10s",
+            "Auto", "Finished", "Time (s)", "Scored", "Error (m)", "Error (deg)"));
+    for (var result : results) {
+      System.out.println(
+          String.format(
+              "%-40s %8s %8.2f %7d %10.3f %10.1f",
+              result.name(),
+              result.finished() ? "yes" : "NO",
+              result.durationSeconds(),
+              result.piecesScored(),
+              result.poseErrorMeters(),
+              result.headingErrorDegrees()));
+    }
+
+    HAL.shutdown();
+    System.exit(results.stream().allMatch(Result::finished) ? 0 : 1);
+  }
+
+  private static void runWorker(RobotContainer robotContainer, long seed, String autoName) {
+    var result = runAutoSafely(robotContainer, autoName, seed, new Random(seed));
+    System.out.println(result.toLine());
+    System.out.flush();
+
+    HAL.shutdown();
+    System.exit(0);
+  }
+
+  static RobotContainer startSimulation(boolean simulateCameras) {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL");
+    }
+    SimHooks.pauseTiming();
+
+    // Act like a blue alliance driver station with both controllers plugged in, so paths aren't
+    // flipped and no missing joystick warnings are printed
+    DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+    DriverStationSim.setDsAttached(true);
+    for (int port = 0; port < 2; port++) {
+      DriverStationSim.setJoystickAxisCount(port, 6);
+      DriverStationSim.setJoystickButtonCount(port, 10);
+      DriverStationSim.setJoystickPOVCount(port, 1);
+    }
+    setEnabled(false);
+
+    return new RobotContainer(simulateCameras);
+  }
+
+  static List<String> findAutoNames() {
+    File[] files =
+        new File(Filesystem.getDeployDirectory(), "pathplanner/autos")
+            .listFiles((dir, name) -> name.endsWith(".auto"));
+    List<String> names = new ArrayList<>();
+    if (files != null) {
+      for (File file : files) {
+        names.add(file.getName().substring(0, file.getName().length() - ".auto".length()));
+      }
+    }
+    names.sort(String::compareTo);
+    return names;
+  }
+
+  private static Result runAutoSafely(
+      RobotContainer robotContainer, String autoName, long seed, Random random) {
+    try {
+      return runAuto(robotContainer, autoName, seed, random);
+    } catch (Exception e) {
+      System.out.println("Failed to run " + autoName + ": " + e);
+      return new Result(autoName, seed, false, Double.NaN, 0, Double.NaN, Double.NaN);
+    }
+  }
+
+  /**
+   * Runs one auto. If random isn't null, the sim is varied with it and the start pose the robot
+   * believes in is offset from the real one.
+   */
+  private static Result runAuto(
+      RobotContainer robotContainer, String autoName, long seed, Random random) throws Exception {
+    var drive = robotContainer.getDrive();
+    var driveSimulation = robotContainer.getDriveSimulation();
+    var endEffector = robotContainer.getEndEffector();
+
+    List<PathPlannerPath> paths = PathPlannerAuto.getPathGroupFromAutoFile(autoName);
+    var auto = new PathPlannerAuto(autoName);
+
+    // Let everything stop from the previous auto, with the robot moved to where this one starts
+    CommandScheduler.getInstance().cancelAll();
+    setEnabled(false);
+    if (auto.getStartingPose() != null) {
+      driveSimulation.setPose(auto.getStartingPose());
+    }
+    for (int i = 0; i < SETTLE_SECONDS / LOOP_PERIOD_SECONDS; i++) {
+      step(robotContainer);
+    }
+
+    SimVariation.reset();
+    if (random != null) {
+      SimVariation.driveTraction =
+          MIN_DRIVE_TRACTION + random.nextDouble() * (1 - MIN_DRIVE_TRACTION);
+      SimVariation.mechanismSpeedScale =
+          MathUtil.clamp(1 + random.nextGaussian() * MECHANISM_SPEED_STD_DEV, 0.7, 1.3);
+      SimVariation.visionCalibErrorPixels = random.nextDouble() * MAX_VISION_CALIB_ERROR_PIXELS;
+      SimVariation.visionCalibErrorStdDevPixels = SimVariation.visionCalibErrorPixels / 3;
+    }
+
+    setEnabled(true);
+    auto.schedule();
+
+    // The auto resets the pose in its first cycle. A start pose error is modeled by offsetting what
+    // the robot believes from where the drive sim put it.
+    step(robotContainer);
+    int steps = 1;
+    if (random != null) {
+      Pose2d trueStart = drive.getPose();
+      Pose2d believedStart =
+          new Pose2d(
+              trueStart.getX() + random.nextGaussian() * START_TRANSLATION_STD_DEV_METERS,
+              trueStart.getY() + random.nextGaussian() * START_TRANSLATION_STD_DEV_METERS,
+              trueStart
+                  .getRotation()
+                  .plus(
+                      Rotation2d.fromDegrees(
+                          random.nextGaussian() * START_ROTATION_STD_DEV_DEGREES)));
+      drive.setPose(believedStart);
+    }
+
+    int piecesScored = 0;
+    boolean wasScoring = false;
+    int maxSteps = (int) Math.round(AUTO_DURATION_SECONDS / LOOP_PERIOD_SECONDS);
+    while (auto.isScheduled() && steps < maxSteps) {
+      step(robotContainer);
+      steps++;
+
+      boolean scoring = endEffector.getVelocityPercent() >= SCORING_VELOCITY_PERCENT;
+      if (scoring && !wasScoring) {
+        piecesScored++;
+      }
+      wasScoring = scoring;
+    }
+    boolean finished = !auto.isScheduled();
+    auto.cancel();
+    SimVariation.reset();
+
+    double poseError = Double.NaN;
+    double headingError = Double.NaN;
+    if (!paths.isEmpty()) {
+      var lastPath = paths.get(paths.size() - 1);
+      var lastPoses = lastPath.getPathPoses();
+      var target =
+          new Pose2d(
+              lastPoses.get(lastPoses.size() - 1).getTranslation(),
+              lastPath.getGoalEndState().rotation());
+      var pose = driveSimulation.getPose();
+      poseError = pose.getTranslation().getDistance(target.getTranslation());
+      headingError = Math.abs(pose.getRotation().minus(target.getRotation()).getDegrees());
+    }
+
+    return new Result(
+        autoName,
+        seed,
+        finished,
+        steps * LOOP_PERIOD_SECONDS,
+        piecesScored,
+        poseError,
+        headingError);
+  }
+
+  private static void setEnabled(boolean enabled) {
+    DriverStationSim.setAutonomous(true);
+    DriverStationSim.setEnabled(enabled);
+    DriverStationSim.notifyNewData();
+    DriverStation.refreshData();
+  }
+
+  private static void step(RobotContainer robotContainer) {
+    SimHooks.stepTiming(LOOP_PERIOD_SECONDS);
+    DriverStation.refreshData();
+    CommandScheduler.getInstance().run();
+    robotContainer.updateSimulation();
+  }
+}
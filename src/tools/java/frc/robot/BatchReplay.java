@@ -0,0 +1,288 @@
+package frc.robot;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.util.datalog.DataLogReader;
+import edu.wpi.first.util.datalog.DataLogRecord;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.littletonrobotics.junction.LogFileUtil;
+
+/**
+ * Replays many logs at once and reports how far the replayed outputs moved from the originals.
+ *
+ * <p>Each log is replayed by its own robot program process, started in replay mode with
+ * "AKIT_LOG_PATH" pointing at the log, so the replays can't affect each other through static
+ * state. A fixed number of replays run at a time. Each writes the usual "_sim" log next to the
+ * original, plus a "_sim.txt" file with the robot program's console output.
+ *
+ * <p>When a replay finishes, the compared outputs are read back from its "_sim" log, which holds
+ * both the original values (under "RealOutputs") and the replayed ones (under "ReplayOutputs").
+ * Outputs are only logged when they change, so both are held at their latest value and compared
+ * once per logged cycle. Doubles are compared directly, and poses by translation and heading.
+ *
+ * <p>Arguments are log files or folders of logs, plus "--workers N" to change how many replays run
+ * at once (defaults to one per core) and "--key KEY" for each output to compare (defaults to
+ * "Odometry/Robot"). Run with "./gradlew batchReplay --args='path/to/logs'".
+ */
+public final class BatchReplay {
+  private static final String LOG_EXTENSION = ".wpilog";
+  private static final String SIM_SUFFIX = "_sim";
+  private static final String DEFAULT_KEY = "Odometry/Robot";
+  private static final long REPLAY_TIMEOUT_MINUTES = 15;
+
+  /** How far one output moved over a whole log. */
+  private static final class Deviation {
+    private final String name;
+    private int count = 0;
+    private double sumSquares = 0;
+    private double max = 0;
+
+    private Deviation(String name) {
+      this.name = name;
+    }
+
+    private void add(double error) {
+      count++;
+      sumSquares += error * error;
+      max = Math.max(max, error);
+    }
+
+    private double rms() {
+      return count > 0 ? Math.sqrt(sumSquares / count) : Double.NaN;
+    }
+  }
+
+  /** The latest original and replayed values of one output. */
+  private static final class Channel {
+    private final Deviation[] deviations;
+    private final boolean isPose;
+    private double[] real = null;
+    private double[] replay = null;
+
+    private Channel(String key, boolean isPose) {
+      this.isPose = isPose;
+      deviations =
+          isPose
+              ? new Deviation[] {new Deviation(key + " (m)"), new Deviation(key + " (deg)")}
+              : new Deviation[] {new Deviation(key)};
+    }
+
+    private void compare() {
+      if (real == null || replay == null) {
+        return;
+      }
+      if (isPose) {
+        deviations[0].add(Math.hypot(replay[0] - real[0], replay[1] - real[1]));
+        double headingError = Math.IEEEremainder(replay[2] - real[2], 2 * Math.PI);
+        deviations[1].add(Math.toDegrees(Math.abs(headingError)));
+      } else {
+        deviations[0].add(Math.abs(replay[0] - real[0]));
+      }
+    }
+  }
+
+  private record Result(String log, String error, double seconds, List<Deviation> deviations) {}
+
+  private BatchReplay() {}
+
+  public static void main(String... args) throws InterruptedException {
+    int workers = Runtime.getRuntime().availableProcessors();
+    List<String> keys = new ArrayList<>();
+    List<File> logs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--workers" -> workers = Integer.parseInt(args[++i]);
+        case "--key" -> keys.add(args[++i]);
+        default -> findLogs(new File(args[i]), logs);
+      }
+    }
+    if (keys.isEmpty()) {
+      keys.add(DEFAULT_KEY);
+    }
+    if (logs.isEmpty()) {
+      System.out.println("No logs found");
+      System.exit(1);
+    }
+    System.out.println("Replaying " + logs.size() + " logs on " + workers + " workers");
+
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    List<Future<Result>> futures = new ArrayList<>();
+    for (File log : logs) {
+      futures.add(executor.submit(() -> replay(log, keys)));
+    }
+    executor.shutdown();
+
+    List<Result> results = new ArrayList<>();
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        results.add(futures.get(i).get());
+      } catch (ExecutionException e) {
+        results.add(new Result(logs.get(i).getName(), e.getCause().toString(), 0, List.of()));
+      }
+    }
+
+    printSummary(results);
+    System.exit(results.stream().allMatch(result -> result.error() == null) ? 0 : 1);
+  }
+
+  private static void findLogs(File file, List<File> logs) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        Arrays.sort(children);
+        for (File child : children) {
+          findLogs(child, logs);
+        }
+      }
+    } else if (file.getName().endsWith(LOG_EXTENSION)
+        && !file.getName().endsWith(SIM_SUFFIX + LOG_EXTENSION)) {
+      logs.add(file.getAbsoluteFile());
+    }
+  }
+
+  private static Result replay(File log, List<String> keys)
+      throws IOException, InterruptedException {
+    File simLog = new File(LogFileUtil.addPathSuffix(log.getPath(), SIM_SUFFIX));
+    File console = new File(simLog.getPath().replace(LOG_EXTENSION, ".txt"));
+    // A leftover output would make the replay pick a different file name
+    simLog.delete();
+
+    String java = ProcessHandle.current().info().command().orElse("java");
+    var builder =
+        new ProcessBuilder(
+            java,
+            "-cp",
+            System.getProperty("java.class.path"),
+            "-Djava.library.path=" + System.getProperty("java.library.path"),
+            "-D" + Constants.REPLAY_PROPERTY + "=true",
+            Main.class.getName());
+    builder.environment().put("AKIT_LOG_PATH", log.getPath());
+    builder.redirectErrorStream(true).redirectOutput(console);
+
+    long startNanos = System.nanoTime();
+    Process process = builder.start();
+    if (!process.waitFor(REPLAY_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+      process.destroyForcibly();
+      return new Result(log.getName(), "Timed out", Double.NaN, List.of());
+    }
+    double seconds = (System.nanoTime() - startNanos) / 1e9;
+    System.out.println(String.format("Replayed %s in %.1f s", log.getName(), seconds));
+
+    if (process.exitValue() != 0 || !simLog.isFile()) {
+      return new Result(
+          log.getName(), "Exited with code " + process.exitValue(), seconds, List.of());
+    }
+    return new Result(log.getName(), null, seconds, compareOutputs(simLog, keys));
+  }
+
+  private static List<Deviation> compareOutputs(File simLog, List<String> keys)
+      throws IOException {
+    var reader = new DataLogReader(simLog.getPath());
+    if (!reader.isValid()) {
+      throw new IOException("Not a valid log: " + simLog);
+    }
+
+    // Entry IDs of the original and replayed values, mapped to their channel
+    Map<Integer, Channel> realEntries = new HashMap<>();
+    Map<Integer, Channel> replayEntries = new HashMap<>();
+    Map<String, Channel> channels = new HashMap<>();
+    long timestamp = Long.MIN_VALUE;
+    for (DataLogRecord record : reader) {
+      if (record.isStart()) {
+        var start = record.getStartData();
+        for (String key : keys) {
+          boolean isReal = start.name.equals("/RealOutputs/" + key);
+          boolean isReplay = start.name.equals("/ReplayOutputs/" + key);
+          if (!isReal && !isReplay) {
+            continue;
+          }
+          boolean isPose = start.type.equals(Pose2d.struct.getTypeString());
+          if (!isPose && !start.type.equals("double")) {
+            System.out.println("Can't compare " + key + ", which is a " + start.type);
+            continue;
+          }
+          var channel = channels.computeIfAbsent(key, k -> new Channel(k, isPose));
+          (isReal ? realEntries : replayEntries).put(start.entry, channel);
+        }
+        continue;
+      }
+      if (record.isControl()) {
+        continue;
+      }
+
+      Channel realChannel = realEntries.get(record.getEntry());
+      Channel replayChannel = replayEntries.get(record.getEntry());
+      if (realChannel == null && replayChannel == null) {
+        continue;
+      }
+
+      // Compare once every value from the previous cycle has been read
+      if (record.getTimestamp() != timestamp) {
+        for (var channel : channels.values()) {
+          channel.compare();
+        }
+        timestamp = record.getTimestamp();
+      }
+      var channel = realChannel != null ? realChannel : replayChannel;
+      double[] value = decode(record, channel.isPose);
+      if (realChannel != null) {
+        channel.real = value;
+      } else {
+        channel.replay = value;
+      }
+    }
+    for (var channel : channels.values()) {
+      channel.compare();
+    }
+
+    List<Deviation> deviations = new ArrayList<>();
+    for (String key : keys) {
+      var channel = channels.get(key);
+      if (channel != null) {
+        deviations.addAll(List.of(channel.deviations));
+      }
+    }
+    return deviations;
+  }
+
+  private static double[] decode(DataLogRecord record, boolean isPose) {
+    if (isPose) {
+      var buffer = ByteBuffer.wrap(record.getRaw()).order(ByteOrder.LITTLE_ENDIAN);
+      var pose = Pose2d.struct.unpack(buffer);
+      return new double[] {pose.getX(), pose.getY(), pose.getRotation().getRadians()};
+    }
+    return new double[] {record.getDouble()};
+  }
+
+  private static void printSummary(List<Result> results) {
+    System.out.println();
+    for (var result : results) {
+      if (result.error() != null) {
+        System.out.println(result.log() + ": FAILED (" + result.error() + ")");
+        continue;
+      }
+      System.out.println(String.format("%s: replayed in %.1f s", result.log(), result.seconds()));
+      if (result.deviations().isEmpty()) {
+        System.out.println("  No compared outputs were logged");
+      }
+      for (var deviation : result.deviations()) {
+        System.out.println(
+            String.format(
+                "  %-40s max %10.4f  rms %10.4f  (%d cycles)",
+                deviation.name, deviation.max, deviation.rms(), deviation.count));
+      }
+    }
+  }
+}